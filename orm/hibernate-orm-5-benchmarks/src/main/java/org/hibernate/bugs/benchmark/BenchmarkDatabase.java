@@ -0,0 +1,74 @@
+package org.hibernate.bugs.benchmark;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.entity.NoCascadeRefreshEntity;
+
+/**
+ * Bootstraps the test persistence unit against a private in-memory H2 database, with SQL and session event logging
+ * off and statistics on so benchmarks can count statements.
+ * <p>
+ * Connections come from HikariCP with the pool size of the {@code hibernate-orm-6} persistence unit instead of the
+ * built-in pool, so that a comparison with {@code hibernate-orm-6-benchmarks} measures Hibernate and not the pool.
+ */
+final class BenchmarkDatabase {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private BenchmarkDatabase() {
+    }
+
+    static EntityManagerFactory createEntityManagerFactory() {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:benchmark" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1;MODE=MySQL");
+        properties.put("javax.persistence.jdbc.user", "sa");
+        properties.put("javax.persistence.jdbc.password", "");
+        properties.put("hibernate.connection.provider_class", "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
+        properties.put("hibernate.hikari.maximumPoolSize", "5");
+        properties.put("hibernate.hikari.connectionTimeout", "5000");
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.generate_statistics", "true");
+        properties.put("hibernate.session.events.log", "false");
+        // the shaded jar is the persistence unit root, so scanning it would pick up hibernate-testing entities too
+        properties.put("hibernate.archive.autodetection", "");
+        properties.put("hibernate.loaded_classes", Arrays.asList(CascadeRefreshEntity.class, NoCascadeRefreshEntity.class, NestedEntity.class));
+        return Persistence.createEntityManagerFactory("templatePU", properties);
+    }
+
+    static void inTransaction(final EntityManagerFactory entityManagerFactory, final Consumer<EntityManager> tx) {
+        fromTransaction(entityManagerFactory, em -> {
+            tx.accept(em);
+            return null;
+        });
+    }
+
+    static <T> T fromTransaction(final EntityManagerFactory entityManagerFactory, final Function<EntityManager, T> tx) {
+        final EntityManager em = entityManagerFactory.createEntityManager();
+        final EntityTransaction transaction = em.getTransaction();
+        transaction.begin();
+        try {
+            final T result = tx.apply(em);
+            transaction.commit();
+            return result;
+        } catch (final RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.hibernate.bugs.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.LockModeType;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.entity.NoCascadeRefreshEntity;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The scenarios compared between Hibernate ORM 5 and 6: a refresh with and without a pessimistic lock, a
+ * {@code findByName} lookup and a persist, each in its own transaction, on {@code CascadeRefreshEntity}
+ * ({@code cascade=true}) or {@code NoCascadeRefreshEntity} ({@code false}).
+ * <p>
+ * {@code hibernate-orm-6-benchmarks} has the same class with {@code jakarta.persistence} imports; keep the two in sync,
+ * its {@code ComparisonReport} matches their results by benchmark name and parameters. {@value #ROWS} roots are seeded,
+ * each with its own {@code NestedEntity}. The {@code statements} secondary result counts the statements of the
+ * measured operation only (the refresh, the lookup, or the flush of the persist), not of the lookup that a refresh
+ * needs first; allocation comes from running with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VersionComparisonBenchmark {
+
+    private static final int ROWS = 100;
+
+    @Param({"true", "false"})
+    public boolean cascade;
+
+    private EntityManagerFactory entityManagerFactory;
+    private Statistics statistics;
+    private Class<?> type;
+    private final Long[] ids = new Long[ROWS];
+    private int next;
+    private long persisted;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        type = cascade ? CascadeRefreshEntity.class : NoCascadeRefreshEntity.class;
+        BenchmarkDatabase.inTransaction(entityManagerFactory, em -> {
+            final Object[] roots = new Object[ROWS];
+            for (int i = 0; i < ROWS; i++) {
+                roots[i] = newEntity("entity " + i);
+                em.persist(roots[i]);
+            }
+            em.flush();
+            for (int i = 0; i < ROWS; i++) {
+                ids[i] = (Long) entityManagerFactory.getPersistenceUnitUtil().getIdentifier(roots[i]);
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public Object refreshWithLock(final Counters counters) {
+        return refresh(counters, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    @Benchmark
+    public Object refreshWithoutLock(final Counters counters) {
+        return refresh(counters, LockModeType.NONE);
+    }
+
+    @Benchmark
+    public Object findByName(final Counters counters) {
+        final String name = "entity " + nextIndex();
+        return BenchmarkDatabase.fromTransaction(entityManagerFactory, em -> {
+            final long before = statistics.getPrepareStatementCount();
+            final Object entity = em.createNamedQuery(type.getSimpleName() + ".findByName")
+                    .setParameter("name", name)
+                    .getSingleResult();
+            counters.count(statistics.getPrepareStatementCount() - before);
+            return entity;
+        });
+    }
+
+    @Benchmark
+    public Object persist(final Counters counters) {
+        final Object entity = newEntity("persisted " + persisted++);
+        BenchmarkDatabase.inTransaction(entityManagerFactory, em -> {
+            final long before = statistics.getPrepareStatementCount();
+            em.persist(entity);
+            em.flush();
+            counters.count(statistics.getPrepareStatementCount() - before);
+        });
+        return entity;
+    }
+
+    private Object refresh(final Counters counters, final LockModeType lockMode) {
+        final Long id = ids[nextIndex()];
+        return BenchmarkDatabase.fromTransaction(entityManagerFactory, em -> {
+            final Object entity = em.find(type, id);
+            final long before = statistics.getPrepareStatementCount();
+            em.refresh(entity, lockMode);
+            counters.count(statistics.getPrepareStatementCount() - before);
+            return entity;
+        });
+    }
+
+    private int nextIndex() {
+        next = (next + 1) % ROWS;
+        return next;
+    }
+
+    private Object newEntity(final String name) {
+        final NestedEntity nested = new NestedEntity();
+        nested.name = "nested of " + name;
+        if (cascade) {
+            final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+            entity.name = name;
+            entity.second = nested;
+            return entity;
+        }
+        final NoCascadeRefreshEntity entity = new NoCascadeRefreshEntity();
+        entity.name = name;
+        entity.second = nested;
+        return entity;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long statements;
+        public long operations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            operations = 0;
+        }
+
+        void count(final long operationStatements) {
+            statements += operationStatements;
+            operations++;
+        }
+    }
+}
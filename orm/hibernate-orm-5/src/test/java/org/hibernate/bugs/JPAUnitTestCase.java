@@ -31,6 +31,8 @@ class JPAUnitTestCase {
 
     @Container
     private static final MySQLContainer<?> DATABASE = new MySQLContainer<>("mysql:8.0")
+            // lets the driver send an insert batch as one multi-row statement
+            .withUrlParam("rewriteBatchedStatements", "true")
             .withCommand(
                     "--innodb-lock-wait-timeout=0",
                     "--character_set_server=utf8",
@@ -1,15 +1,30 @@
 package org.hibernate.bugs.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Version;
 
+/**
+ * Read-mostly, so kept in the second-level cache: the eager {@code second} of a non-locking lookup is resolved from the
+ * cache instead of a select per row. Pessimistic loads and refreshes bypass the cache; a refresh soft-locks the entry
+ * until its transaction ends, and the next read puts the version it loads. Read-write keeps concurrent updates from
+ * leaving a stale entry behind.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class NestedEntity {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "NestedEntity_SEQ")
+    @SequenceGenerator(name = "NestedEntity_SEQ", sequenceName = "NestedEntity_SEQ", allocationSize = CascadeRefreshEntity.ID_ALLOCATION_SIZE)
     public Long id;
 
     @Version
@@ -4,9 +4,11 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.EntityManager;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.persistence.NamedQuery;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Version;
 
 @Entity
@@ -20,7 +22,8 @@ public class NoCascadeRefreshEntity {
     }
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "NoCascadeRefreshEntity_SEQ")
+    @SequenceGenerator(name = "NoCascadeRefreshEntity_SEQ", sequenceName = "NoCascadeRefreshEntity_SEQ", allocationSize = CascadeRefreshEntity.ID_ALLOCATION_SIZE)
     public Long id;
 
     @Version
@@ -0,0 +1,84 @@
+package org.hibernate.bugs.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.entity.NoCascadeRefreshEntity;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.Persistence;
+
+/**
+ * Bootstraps the test persistence unit against a private in-memory H2 database, with SQL and session event logging
+ * off and statistics on so benchmarks can count statements.
+ * <p>
+ * {@code -Dbenchmark.jdbc.url}, {@code -Dbenchmark.jdbc.user} and {@code -Dbenchmark.jdbc.password} point it at
+ * another database instead, for benchmarks that need what H2 lacks, such as {@code skip locked}. The persistence unit
+ * creates and drops its tables there, so use a scratch schema.
+ */
+final class BenchmarkDatabase {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private BenchmarkDatabase() {
+    }
+
+    static EntityManagerFactory createEntityManagerFactory() {
+        return createEntityManagerFactory(Map.of());
+    }
+
+    static EntityManagerFactory createEntityManagerFactory(final Map<String, Object> overrides) {
+        final Map<String, Object> properties = new HashMap<>();
+        final String url = System.getProperty("benchmark.jdbc.url");
+        if (url == null) {
+            properties.put("jakarta.persistence.jdbc.url", "jdbc:h2:mem:benchmark" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1;MODE=MySQL");
+            properties.put("jakarta.persistence.jdbc.user", "sa");
+            properties.put("jakarta.persistence.jdbc.password", "");
+        } else {
+            properties.put("jakarta.persistence.jdbc.url", url);
+            properties.put("jakarta.persistence.jdbc.user", System.getProperty("benchmark.jdbc.user", ""));
+            properties.put("jakarta.persistence.jdbc.password", System.getProperty("benchmark.jdbc.password", ""));
+        }
+        properties.put("hibernate.show_sql", "false");
+        properties.put("hibernate.generate_statistics", "true");
+        properties.put("hibernate.session.events.log", "false");
+        // the shaded jar is the persistence unit root, so scanning it would pick up hibernate-testing entities too
+        properties.put("hibernate.archive.autodetection", "");
+        properties.put("hibernate.loaded_classes", List.of(CascadeRefreshEntity.class, NoCascadeRefreshEntity.class, NestedEntity.class));
+        properties.putAll(overrides);
+        return Persistence.createEntityManagerFactory("templatePU", properties);
+    }
+
+    static void inTransaction(final EntityManagerFactory entityManagerFactory, final Consumer<EntityManager> tx) {
+        fromTransaction(entityManagerFactory, em -> {
+            tx.accept(em);
+            return null;
+        });
+    }
+
+    static <T> T fromTransaction(final EntityManagerFactory entityManagerFactory, final Function<EntityManager, T> tx) {
+        final EntityManager em = entityManagerFactory.createEntityManager();
+        final EntityTransaction transaction = em.getTransaction();
+        transaction.begin();
+        try {
+            final T result = tx.apply(em);
+            transaction.commit();
+            return result;
+        } catch (final RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+}
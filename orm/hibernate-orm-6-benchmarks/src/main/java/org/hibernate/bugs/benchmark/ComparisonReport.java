@@ -0,0 +1,156 @@
+package org.hibernate.bugs.benchmark;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Puts the {@link VersionComparisonBenchmark} results of Hibernate ORM 5 and 6 side by side in one markdown table:
+ * latency, statements per operation and bytes allocated per operation.
+ * <p>
+ * The arguments are the CSV result files of the two benchmark jars ({@code -rf csv -rff <file>}), ORM 5 first, and
+ * optionally the markdown file to write instead of standard output. Allocation is only reported when the runs used
+ * {@code -prof gc}.
+ */
+public final class ComparisonReport {
+
+    private static final String BENCHMARK = VersionComparisonBenchmark.class.getSimpleName() + ".";
+    private static final String STATEMENTS = "statements";
+    private static final String OPERATIONS = "operations";
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+    private static final String ERROR = " error";
+
+    private ComparisonReport() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: ComparisonReport <orm5.csv> <orm6.csv> [report.md]");
+            System.exit(2);
+        }
+        final Map<String, Map<String, Double>> orm5 = read(Path.of(args[0]));
+        final Map<String, Map<String, Double>> orm6 = read(Path.of(args[1]));
+
+        if (args.length == 3) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(Path.of(args[2])), true, StandardCharsets.UTF_8)) {
+                write(out, orm5, orm6);
+            }
+        } else {
+            write(System.out, orm5, orm6);
+        }
+    }
+
+    static void write(final PrintStream out, final Map<String, Map<String, Double>> orm5, final Map<String, Map<String, Double>> orm6) {
+        out.println("| Scenario | ORM 5 us/op | ORM 6 us/op | ORM 6 / ORM 5 | ORM 5 statements/op | ORM 6 statements/op | ORM 5 B/op | ORM 6 B/op |");
+        out.println("|---|---:|---:|---:|---:|---:|---:|---:|");
+        final Map<String, Boolean> scenarios = new LinkedHashMap<>();
+        orm5.keySet().forEach(scenario -> scenarios.put(scenario, true));
+        orm6.keySet().forEach(scenario -> scenarios.put(scenario, true));
+        for (final String scenario : scenarios.keySet()) {
+            final Map<String, Double> before = orm5.getOrDefault(scenario, Map.of());
+            final Map<String, Double> after = orm6.getOrDefault(scenario, Map.of());
+            final Double latencyBefore = before.get("");
+            final Double latencyAfter = after.get("");
+            out.printf(
+                    "| %s | %s | %s | %s | %s | %s | %s | %s |%n",
+                    scenario,
+                    latency(before), latency(after),
+                    latencyBefore == null || latencyAfter == null ? "" : String.format("%.2f", latencyAfter / latencyBefore),
+                    format(perOperation(before), "%.2f"), format(perOperation(after), "%.2f"),
+                    format(before.get(ALLOCATION), "%.0f"), format(after.get(ALLOCATION), "%.0f")
+            );
+        }
+    }
+
+    /**
+     * Scores by scenario ({@code method param=value ...}) and metric, the empty metric being the primary result; the
+     * confidence interval of each metric is under its name followed by {@value #ERROR}.
+     */
+    static Map<String, Map<String, Double>> read(final Path csv) throws IOException {
+        final List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        final List<String> header = fields(lines.get(0));
+        final int benchmark = header.indexOf("Benchmark");
+        final int score = header.indexOf("Score");
+        final int error = header.indexOf("Score Error (99.9%)");
+
+        final Map<String, Map<String, Double>> scores = new TreeMap<>();
+        for (final String line : lines.subList(1, lines.size())) {
+            final List<String> row = fields(line);
+            final String name = row.get(benchmark);
+            final int start = name.indexOf(BENCHMARK);
+            if (start < 0) {
+                continue;
+            }
+            final String[] method = name.substring(start + BENCHMARK.length()).split(":", 2);
+
+            final StringBuilder scenario = new StringBuilder(method[0]);
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ")) {
+                    scenario.append(' ').append(header.get(i).substring("Param: ".length())).append('=').append(row.get(i));
+                }
+            }
+            // older JMH versions prefix the profiler results with a middle dot
+            final String metric = method.length == 1 ? "" : method[1].replace("\u00b7", "");
+            final Map<String, Double> metrics = scores.computeIfAbsent(scenario.toString(), s -> new TreeMap<>());
+            metrics.put(metric, Double.parseDouble(row.get(score)));
+            metrics.put(metric + ERROR, Double.parseDouble(row.get(error)));
+        }
+        return scores;
+    }
+
+    /**
+     * The average time with its 99.9% confidence interval; JMH reports no interval for a single iteration.
+     */
+    private static String latency(final Map<String, Double> scores) {
+        final Double latency = scores.get("");
+        final Double error = scores.get(ERROR);
+        if (latency == null) {
+            return "";
+        }
+        return error == null || error.isNaN() ? String.format("%.1f", latency) : String.format("%.1f +/- %.1f", latency, error);
+    }
+
+    private static Double perOperation(final Map<String, Double> scores) {
+        final Double statements = scores.get(STATEMENTS);
+        final Double operations = scores.get(OPERATIONS);
+        return statements == null || operations == null || operations == 0 ? null : statements / operations;
+    }
+
+    private static String format(final Double value, final String format) {
+        return value == null ? "" : String.format(format, value);
+    }
+
+    /**
+     * Splits one line of a JMH CSV file, whose fields are quoted when they are text.
+     */
+    private static List<String> fields(final String line) {
+        final List<String> fields = new ArrayList<>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
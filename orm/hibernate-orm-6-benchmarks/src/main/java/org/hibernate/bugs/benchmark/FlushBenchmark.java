@@ -0,0 +1,124 @@
+package org.hibernate.bugs.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Latency of a flush in a long transaction holding {@code managed} {@code CascadeRefreshEntity} rows and as many
+ * {@code NestedEntity} rows, with no entity ({@code dirty=0}) or one entity ({@code dirty=1}) changed since the last
+ * flush.
+ * <p>
+ * Without bytecode enhancement a flush compares the state of every managed entity with its snapshot, so its cost grows
+ * with the persistence context even when nothing changed. Built with the {@code enhance} profile the entities track
+ * their own changes, and a flush only asks each of them for its dirty attributes. The secondary results divided by
+ * {@code operations} give the entities in the persistence context at each flush ({@code entities}) and whether they
+ * are enhanced ({@code enhanced}, 1 or 0); the flush cost per managed entity is the score divided by the former.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int managed;
+
+    @Param({"0", "1"})
+    public int dirty;
+
+    private EntityManagerFactory entityManagerFactory;
+    private Statistics statistics;
+    private EntityManager em;
+    private List<CascadeRefreshEntity> entities;
+    private int contextSize;
+    private boolean enhanced;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        BenchmarkDatabase.inTransaction(entityManagerFactory, seed -> {
+            for (int i = 0; i < managed; i++) {
+                final NestedEntity nested = new NestedEntity();
+                nested.name = "nested " + i;
+
+                final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+                entity.name = "entity " + i;
+                entity.second = nested;
+                seed.persist(entity);
+            }
+        });
+
+        em = entityManagerFactory.createEntityManager();
+        em.getTransaction().begin();
+        entities = em.createQuery("select e from CascadeRefreshEntity e join fetch e.second", CascadeRefreshEntity.class).getResultList();
+        contextSize = em.unwrap(Session.class).getStatistics().getEntityCount();
+        enhanced = entities.get(0) instanceof SelfDirtinessTracker;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.getTransaction().rollback();
+        em.close();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public void flush(final Counters counters) {
+        for (int i = 0; i < dirty; i++) {
+            final CascadeRefreshEntity entity = entities.get(next++ % entities.size());
+            entity.name = "entity " + next;
+        }
+        final long before = statistics.getPrepareStatementCount();
+        em.flush();
+        counters.statements += statistics.getPrepareStatementCount() - before;
+        counters.entities += contextSize;
+        counters.enhanced += enhanced ? 1 : 0;
+        counters.operations++;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long statements;
+        public long entities;
+        public long enhanced;
+        public long operations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            entities = 0;
+            enhanced = 0;
+            operations = 0;
+        }
+    }
+}
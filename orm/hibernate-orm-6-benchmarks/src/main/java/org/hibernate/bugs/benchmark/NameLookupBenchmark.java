@@ -0,0 +1,119 @@
+package org.hibernate.bugs.benchmark;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Latency of {@code findByName} and of a locking {@code findByNames} lookup of one name, over a large table with and
+ * without the index on {@code name}.
+ * <p>
+ * The rows are inserted with one {@code insert ... select} from H2's {@code system_range}, then the index is dropped
+ * for {@code indexed=false}. The {@code rowsRead} and {@code operations} secondary results of
+ * {@code findByNameForUpdate} give how many rows H2 reads to answer the locking lookup, taken once per trial from
+ * {@code explain analyze}: InnoDB locks every row a locking read examines (and, under {@code REPEATABLE READ}, keeps
+ * them locked until commit), so that count is the lock footprint of the lookup on MySQL, while H2 itself only locks the
+ * rows it returns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class NameLookupBenchmark {
+
+    private static final Pattern SCAN_COUNT = Pattern.compile("scanCount: (\\d+)");
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean indexed;
+
+    private EntityManagerFactory entityManagerFactory;
+    private long lockingLookupRowsRead;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory();
+        BenchmarkDatabase.inTransaction(entityManagerFactory, em -> {
+            em.createNativeQuery("insert into NestedEntity (id, name, version) values (1, 'nested', 0)").executeUpdate();
+            em.createNativeQuery("insert into CascadeRefreshEntity (id, name, version, second_id) select x, concat('entity-', x), 0, 1 from system_range(1, " + rows + ")")
+                    .executeUpdate();
+            if (!indexed) {
+                em.createNativeQuery("drop index " + CascadeRefreshEntity.NAME_INDEX).executeUpdate();
+            }
+        });
+
+        final String plan = BenchmarkDatabase.fromTransaction(entityManagerFactory, em -> {
+            final List<?> lines = em.createNativeQuery("explain analyze select id from CascadeRefreshEntity where name = 'entity-" + (rows / 2) + "' for update")
+                    .getResultList();
+            return String.valueOf(lines.get(0));
+        });
+        final Matcher scanCount = SCAN_COUNT.matcher(plan);
+        if (!scanCount.find()) {
+            throw new IllegalStateException("No scan count in the plan of the locking lookup: " + plan);
+        }
+        lockingLookupRowsRead = Long.parseLong(scanCount.group(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public CascadeRefreshEntity findByName() {
+        final String name = "entity-" + (1 + random.nextInt(rows));
+        return BenchmarkDatabase.fromTransaction(entityManagerFactory, em -> CascadeRefreshEntity.findByName(em, name));
+    }
+
+    @Benchmark
+    public CascadeRefreshEntity findByNameForUpdate(final Counters counters) {
+        final String name = "entity-" + (1 + random.nextInt(rows));
+        final CascadeRefreshEntity entity = BenchmarkDatabase.fromTransaction(
+                entityManagerFactory,
+                em -> CascadeRefreshEntity.findByNames(em, List.of(name), LockModeType.PESSIMISTIC_WRITE, false).get(name)
+        );
+        counters.rowsRead += lockingLookupRowsRead;
+        counters.operations++;
+        return entity;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long rowsRead;
+        public long operations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rowsRead = 0;
+            operations = 0;
+        }
+    }
+}
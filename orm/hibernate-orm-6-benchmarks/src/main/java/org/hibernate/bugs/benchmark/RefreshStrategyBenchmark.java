@@ -0,0 +1,106 @@
+package org.hibernate.bugs.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.refresh.RefreshStrategy;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Cost of each {@link RefreshStrategy} on a {@code CascadeRefreshEntity}.
+ * <p>
+ * {@code fanOut} roots share one {@code NestedEntity}; one operation refreshes all of them in a single transaction.
+ * Statements per operation are {@code statements / operations} of the secondary results; allocation rates come from
+ * running with {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RefreshStrategyBenchmark {
+
+    @Param({"REFRESH", "REFRESH_NO_LOCK", "WITH_PROFILE", "WITH_GRAPH", "ROOT_ONLY_LOCK", "OPTIMISTIC", "OPTIMISTIC_FORCE_INCREMENT"})
+    public RefreshStrategy strategy;
+
+    @Param({"1", "10", "100"})
+    public int fanOut;
+
+    private EntityManagerFactory entityManagerFactory;
+    private Statistics statistics;
+    private Long nestedId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        nestedId = BenchmarkDatabase.fromTransaction(entityManagerFactory, em -> {
+            final NestedEntity nested = new NestedEntity();
+            nested.name = "nested";
+            for (int i = 0; i < fanOut; i++) {
+                final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+                entity.name = "entity " + i;
+                entity.second = nested;
+                em.persist(entity);
+            }
+            return nested.id;
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public void refresh(final Counters counters) {
+        BenchmarkDatabase.inTransaction(entityManagerFactory, em -> {
+            final List<CascadeRefreshEntity> entities = new ArrayList<>(
+                    em.createQuery("select e from CascadeRefreshEntity e where e.second.id = :nested", CascadeRefreshEntity.class)
+                            .setParameter("nested", nestedId)
+                            .getResultList()
+            );
+            final long before = statistics.getPrepareStatementCount();
+            for (final CascadeRefreshEntity entity : entities) {
+                strategy.refresh(em, entity);
+            }
+            counters.statements += statistics.getPrepareStatementCount() - before;
+            counters.operations++;
+        });
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long statements;
+        public long operations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            operations = 0;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.hibernate.bugs.benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Latency of a {@code findByName} lookup, each in its own transaction, with {@code NestedEntity} resolved from the
+ * second-level cache ({@code retrieveMode=USE}) or from the database ({@code BYPASS}).
+ * <p>
+ * {@value #ROWS} {@code CascadeRefreshEntity} rows share {@value #NESTED} {@code NestedEntity} rows. The
+ * {@code statements} and {@code operations} secondary results give the statements per lookup, and
+ * {@code cacheHits / (cacheHits + loads)} the {@code NestedEntity} cache hit ratio.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecondLevelCacheBenchmark {
+
+    private static final int ROWS = 1000;
+    private static final int NESTED = 10;
+
+    @Param({"USE", "BYPASS"})
+    public CacheRetrieveMode retrieveMode;
+
+    private EntityManagerFactory entityManagerFactory;
+    private Statistics statistics;
+    private EntityStatistics nestedStatistics;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        BenchmarkDatabase.inTransaction(entityManagerFactory, em -> {
+            final NestedEntity[] nested = new NestedEntity[NESTED];
+            for (int i = 0; i < NESTED; i++) {
+                nested[i] = new NestedEntity();
+                nested[i].name = "nested " + i;
+            }
+            for (int i = 0; i < ROWS; i++) {
+                final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+                entity.name = "entity " + i;
+                entity.second = nested[i % NESTED];
+                em.persist(entity);
+            }
+        });
+        statistics.clear();
+        // looked up after the clear, which drops the entity statistics
+        nestedStatistics = statistics.getEntityStatistics(NestedEntity.class.getName());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public String findByName(final Counters counters) {
+        final String name = "entity " + random.nextInt(ROWS);
+        final long before = statistics.getPrepareStatementCount();
+        final long hitsBefore = nestedStatistics.getCacheHitCount();
+        final long loadsBefore = nestedStatistics.getLoadCount();
+        final String nestedName = BenchmarkDatabase.fromTransaction(entityManagerFactory, em -> {
+            em.setProperty("jakarta.persistence.cache.retrieveMode", retrieveMode);
+            return CascadeRefreshEntity.findByName(em, name).second.name;
+        });
+        counters.statements += statistics.getPrepareStatementCount() - before;
+        counters.cacheHits += nestedStatistics.getCacheHitCount() - hitsBefore;
+        counters.loads += nestedStatistics.getLoadCount() - loadsBefore;
+        counters.operations++;
+        return nestedName;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long statements;
+        public long cacheHits;
+        public long loads;
+        public long operations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            cacheHits = 0;
+            loads = 0;
+            operations = 0;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.hibernate.bugs.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Pairs per second of persisting {@code CascadeRefreshEntity} rows with a cascaded {@code NestedEntity}, in
+ * transactions of {@link #PAIRS} pairs, with and without JDBC batching.
+ * <p>
+ * {@code batchSize=0} turns batching and insert ordering off, leaving one insert round trip per row; ids come from the
+ * pooled sequences either way. The {@code statements} secondary result counts prepared statements: one per row without
+ * batching, a handful per transaction with it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeedingBenchmark {
+
+    private static final int PAIRS = 1000;
+
+    @Param({"0", "50"})
+    public int batchSize;
+
+    private EntityManagerFactory entityManagerFactory;
+    private Statistics statistics;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory(
+                Map.of(
+                        "hibernate.jdbc.batch_size", String.valueOf(batchSize),
+                        "hibernate.order_inserts", String.valueOf(batchSize > 0)
+                )
+        );
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void persist(final Counters counters) {
+        final long statementsBefore = statistics.getPrepareStatementCount();
+        BenchmarkDatabase.inTransaction(entityManagerFactory, em -> {
+            for (int i = 0; i < PAIRS; i++) {
+                final NestedEntity nested = new NestedEntity();
+                nested.name = "nested " + next;
+
+                final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+                entity.name = "entity " + next++;
+                entity.second = nested;
+                em.persist(entity);
+            }
+        });
+        counters.statements += statistics.getPrepareStatementCount() - statementsBefore;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long statements;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.hibernate.bugs.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.refresh.SkipLockedClaim;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Rows per second of draining a queue of {@link #JOBS} {@code CascadeRefreshEntity} rows with
+ * {@link SkipLockedClaim#claimNext}, by 1 or 4 workers claiming {@link #CLAIM_SIZE} rows per transaction and spending
+ * {@link #WORK_MILLIS} ms on each.
+ * <p>
+ * H2 renders {@code skip locked} as a plain {@code for update}, so this benchmark refuses to run on it: point
+ * {@link BenchmarkDatabase} at MySQL with {@code -Dbenchmark.jdbc.url}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SkipLockedBenchmark {
+
+    private static final int JOBS = 200;
+    private static final int CLAIM_SIZE = 10;
+    private static final long WORK_MILLIS = 2;
+
+    @Param({"1", "4"})
+    public int workers;
+
+    private EntityManagerFactory entityManagerFactory;
+    private ExecutorService pool;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = BenchmarkDatabase.createEntityManagerFactory();
+        if (entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect() instanceof H2Dialect) {
+            entityManagerFactory.close();
+            throw new IllegalStateException("H2 does not skip locked rows; run with -Dbenchmark.jdbc.url=jdbc:mysql://...");
+        }
+        pool = Executors.newFixedThreadPool(workers);
+    }
+
+    @Setup(Level.Invocation)
+    public void seed() {
+        round++;
+        BenchmarkDatabase.inTransaction(entityManagerFactory, em -> {
+            final NestedEntity nested = new NestedEntity();
+            nested.name = "nested " + round;
+            for (int i = 0; i < JOBS; i++) {
+                final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+                entity.name = prefix() + i;
+                entity.second = nested;
+                em.persist(entity);
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(JOBS)
+    public void drain() throws InterruptedException, ExecutionException {
+        final String prefix = prefix();
+        final List<Future<?>> futures = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            futures.add(pool.submit(() -> {
+                boolean more = true;
+                while (more) {
+                    more = BenchmarkDatabase.fromTransaction(entityManagerFactory, em -> {
+                        final List<CascadeRefreshEntity> claimed = SkipLockedClaim.claimNext(em, CascadeRefreshEntity.class, prefix, CLAIM_SIZE);
+                        for (final CascadeRefreshEntity entity : claimed) {
+                            entity.name = "done-" + entity.name;
+                            sleep(WORK_MILLIS);
+                        }
+                        return !claimed.isEmpty();
+                    });
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private String prefix() {
+        return "job-" + round + "-";
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
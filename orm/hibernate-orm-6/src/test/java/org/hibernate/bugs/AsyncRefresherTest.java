@@ -0,0 +1,146 @@
+package org.hibernate.bugs;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.refresh.AsyncRefresher;
+import org.hibernate.bugs.refresh.OptimisticRefresh;
+import org.hibernate.bugs.refresh.RefreshStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+
+/**
+ * Checks that {@link AsyncRefresher} fans refreshes out within its concurrency limit, in threads as well as in running
+ * calls, and reports lock failures as the lock exception itself.
+ */
+class AsyncRefresherTest {
+
+    private static final int ROWS = 8;
+    private static final int MAX_CONCURRENCY = 3;
+    private static final int BURST = 200;
+
+    private EntityManagerFactory entityManagerFactory;
+    private AsyncRefresher refresher;
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void init() {
+        entityManagerFactory = TestDatabase.sharedEntityManagerFactory();
+        refresher = new AsyncRefresher(entityManagerFactory, MAX_CONCURRENCY);
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            for (int i = 0; i < ROWS; i++) {
+                final CascadeRefreshEntity entity = TestDatabase.persistWithNested(em, "entity " + i, "nested " + i);
+                ids.add(entity.id);
+            }
+        });
+    }
+
+    @AfterEach
+    void destroy() throws InterruptedException {
+        if (refresher != null) {
+            refresher.close();
+        }
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+        }
+    }
+
+    @Test
+    void fansOutRefreshes() {
+        final List<CompletableFuture<CascadeRefreshEntity>> futures = new ArrayList<>();
+        for (final Long id : ids) {
+            futures.add(refresher.refresh(CascadeRefreshEntity.class, id, RefreshStrategy.REFRESH));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        for (int i = 0; i < ROWS; i++) {
+            final CascadeRefreshEntity entity = futures.get(i).join();
+            Assertions.assertEquals("entity " + i, entity.name);
+            Assertions.assertEquals("nested " + i, entity.second.name);
+        }
+    }
+
+    @Test
+    void boundsConcurrency() {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (final Long id : ids) {
+            futures.add(refresher.inTransaction(em -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                RefreshStrategy.REFRESH.refresh(em, em.find(CascadeRefreshEntity.class, id));
+                TestDatabase.sleep(50);
+                running.decrementAndGet();
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        Assertions.assertEquals(MAX_CONCURRENCY, maxRunning.get());
+    }
+
+    @Test
+    void burstStartsNoThreadPerCall() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        final int before = threads.getThreadCount();
+
+        final List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < BURST; i++) {
+            final Long id = ids.get(i % ROWS);
+            futures.add(refresher.inTransaction(em -> {
+                TestDatabase.sleep(1);
+                return em.find(CascadeRefreshEntity.class, id).name;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        // the refresher's threads, plus a couple the connection pool or the database may start meanwhile
+        final int peak = threads.getPeakThreadCount();
+        Assertions.assertTrue(peak <= before + MAX_CONCURRENCY + 2, () -> before + " threads before the burst, " + peak + " at its peak");
+    }
+
+    @Test
+    void failsWithOptimisticLockException() {
+        final Long id = ids.get(0);
+        final CompletableFuture<Void> stale = refresher.inTransaction(em -> {
+            OptimisticRefresh.refresh(em, em.find(CascadeRefreshEntity.class, id), LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+            TestDatabase.inTransaction(entityManagerFactory, other -> other.find(CascadeRefreshEntity.class, id).name = "entity 0 (UPDATED)");
+            return null;
+        });
+
+        final CompletionException failure = Assertions.assertThrows(CompletionException.class, stale::join);
+        Assertions.assertInstanceOf(OptimisticLockException.class, failure.getCause());
+    }
+
+    @Test
+    void failsWithPessimisticLockException() {
+        final Long id = ids.get(0);
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            em.find(CascadeRefreshEntity.class, id, LockModeType.PESSIMISTIC_WRITE);
+
+            final CompletableFuture<CascadeRefreshEntity> conflicting = refresher.refresh(CascadeRefreshEntity.class, id, RefreshStrategy.REFRESH);
+            final CompletionException failure = Assertions.assertThrows(CompletionException.class, conflicting::join);
+            Assertions.assertInstanceOf(PessimisticLockException.class, failure.getCause());
+
+            // the other rows are not locked
+            Assertions.assertEquals("entity 1", refresher.refresh(CascadeRefreshEntity.class, ids.get(1), RefreshStrategy.REFRESH).join().name);
+        });
+
+        Assertions.assertEquals("entity 0", refresher.refresh(CascadeRefreshEntity.class, id, RefreshStrategy.REFRESH).join().name);
+    }
+}
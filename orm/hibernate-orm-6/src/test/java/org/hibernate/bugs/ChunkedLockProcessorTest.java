@@ -0,0 +1,171 @@
+package org.hibernate.bugs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.Session;
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.refresh.ChunkedLockProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Checks that {@link ChunkedLockProcessor} locks and processes every matching row once, chunk by chunk, and that its
+ * heap use does not grow with the number of rows.
+ * <p>
+ * The factory logs no SQL, and on MySQL it adds {@code useCursorFetch=true} so that the driver streams the scroll.
+ */
+class ChunkedLockProcessorTest {
+
+    private static final int MANY_ROWS = 1_000_000;
+    private static final int COMMIT_INTERVAL = 5000;
+    /**
+     * Allowed growth of the live heap over the first sample of the large run. An in-memory H2 database lives in the
+     * same heap and its live size moves by tens of megabytes as rows are rewritten; keeping the million processed
+     * entities, their entries and snapshots would add several hundred.
+     */
+    private static final long MAX_HEAP_GROWTH = 128 * 1024 * 1024;
+
+    private EntityManagerFactory entityManagerFactory;
+    private NestedEntity from;
+    private NestedEntity to;
+
+    @BeforeEach
+    void init() {
+        final Object url = TestDatabase.properties().get("jakarta.persistence.jdbc.url");
+        // update rather than create-drop, so closing this factory keeps the schema of the shared one
+        entityManagerFactory = TestDatabase.createEntityManagerFactory(
+                Map.of(
+                        "hibernate.hbm2ddl.auto", "update",
+                        "hibernate.show_sql", "false",
+                        "hibernate.session.events.log", "false",
+                        "jakarta.persistence.jdbc.url", TestDatabase.isH2() ? url : url + "&useCursorFetch=true"
+                )
+        );
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            from = new NestedEntity();
+            from.name = "from";
+            em.persist(from);
+            to = new NestedEntity();
+            to.name = "to";
+            em.persist(to);
+        });
+    }
+
+    @AfterEach
+    void destroy() {
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+            entityManagerFactory.close();
+        }
+    }
+
+    @Test
+    void processesEveryMatchingRowOnce() {
+        final List<Long> ids = new ArrayList<>();
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            for (int i = 0; i < 25; i++) {
+                final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+                entity.name = "entity " + i;
+                entity.second = em.getReference(NestedEntity.class, i == 20 ? to.id : from.id);
+                em.persist(entity);
+                ids.add(entity.id);
+            }
+        });
+
+        final AtomicInteger maxLockedPerChunk = new AtomicInteger();
+        final ChunkedLockProcessor.Progress progress = new ChunkedLockProcessor<>(entityManagerFactory, CascadeRefreshEntity.class)
+                .withPredicate("e.second = :from", Map.of("from", from))
+                .withCommitInterval(10)
+                .withFetchSize(4)
+                .process((em, entity) -> {
+                    Assertions.assertEquals(LockModeType.PESSIMISTIC_WRITE, em.getLockMode(entity));
+                    maxLockedPerChunk.accumulateAndGet(em.unwrap(Session.class).getStatistics().getEntityCount(), Math::max);
+                    if (entity.id.equals(ids.get(0))) {
+                        // a row of the last chunk stops matching after it was scrolled
+                        TestDatabase.inTransaction(entityManagerFactory, other -> other.find(CascadeRefreshEntity.class, ids.get(24)).second = other.find(NestedEntity.class, to.id));
+                    }
+                    entity.second = em.getReference(NestedEntity.class, to.id);
+                });
+
+        Assertions.assertEquals(23, progress.processed(), progress::toString);
+        Assertions.assertEquals(1, progress.skipped(), progress::toString);
+        Assertions.assertEquals(3, progress.chunks(), progress::toString);
+        // ten roots and their NestedEntity, never the rows of the previous chunks
+        Assertions.assertTrue(maxLockedPerChunk.get() <= 12, () -> "managed entities: " + maxLockedPerChunk.get());
+        TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertEquals(
+                25L,
+                em.createQuery("select count(e) from CascadeRefreshEntity e where e.second.id = :to", Long.class).setParameter("to", to.id).getSingleResult()
+        ));
+    }
+
+    @Test
+    @Tag("slow")
+    void processesAMillionRowsInConstantHeap() {
+        seed(MANY_ROWS);
+
+        final List<Long> heapSamples = new ArrayList<>();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicInteger maxManaged = new AtomicInteger();
+        final ChunkedLockProcessor.Progress progress = new ChunkedLockProcessor<>(entityManagerFactory, CascadeRefreshEntity.class)
+                .withPredicate("e.second = :from", Map.of("from", from))
+                .withCommitInterval(COMMIT_INTERVAL)
+                .withFetchSize(COMMIT_INTERVAL)
+                .process((em, entity) -> {
+                    if (rows.getAndIncrement() % (MANY_ROWS / 10) == 0) {
+                        maxManaged.accumulateAndGet(em.unwrap(Session.class).getStatistics().getEntityCount(), Math::max);
+                        heapSamples.add(usedHeap());
+                    }
+                    entity.second = em.getReference(NestedEntity.class, to.id);
+                });
+        heapSamples.add(usedHeap());
+
+        Assertions.assertEquals(MANY_ROWS, progress.processed(), progress::toString);
+        Assertions.assertEquals(MANY_ROWS / COMMIT_INTERVAL, progress.chunks(), progress::toString);
+        Assertions.assertTrue(maxManaged.get() <= COMMIT_INTERVAL + 1, () -> "managed entities: " + maxManaged.get());
+        final long growth = Collections.max(heapSamples) - heapSamples.get(0);
+        Assertions.assertTrue(growth < MAX_HEAP_GROWTH, () -> "live heap samples (bytes): " + heapSamples);
+        TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertEquals(
+                0L,
+                em.createQuery("select count(e) from CascadeRefreshEntity e where e.second.id = :from", Long.class).setParameter("from", from.id).getSingleResult()
+        ));
+    }
+
+    /**
+     * Inserts the rows with one statement: persisting a million entities would take most of the test's time.
+     */
+    private void seed(final int rows) {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            if (TestDatabase.isH2()) {
+                em.createNativeQuery("insert into CascadeRefreshEntity (id, name, version, second_id) select x, concat('entity ', x), 0, :from from system_range(1, :rows)")
+                        .setParameter("from", from.id)
+                        .setParameter("rows", rows)
+                        .executeUpdate();
+            } else {
+                em.createNativeQuery("set session cte_max_recursion_depth = " + rows).executeUpdate();
+                em.createNativeQuery("insert into CascadeRefreshEntity (id, name, version, second_id) with recursive seq (x) as (select 1 union all select x + 1 from seq where x < :rows) select x, concat('entity ', x), 0, :from from seq")
+                        .setParameter("from", from.id)
+                        .setParameter("rows", rows)
+                        .executeUpdate();
+            }
+        });
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
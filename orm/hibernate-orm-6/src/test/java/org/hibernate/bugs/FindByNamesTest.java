@@ -0,0 +1,111 @@
+package org.hibernate.bugs;
+
+import static org.hibernate.bugs.sql.SqlShape.select;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.hibernate.Hibernate;
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.entity.NoCascadeRefreshEntity;
+import org.hibernate.bugs.sql.SqlAssertions;
+import org.hibernate.bugs.sql.StatementCapture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Checks the bulk name lookups: results by name, {@code in} list chunking and padding, lock and join fetch.
+ */
+class FindByNamesTest {
+
+    private static final int ROWS = 600;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void init() {
+        entityManagerFactory = TestDatabase.sharedEntityManagerFactory();
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            for (int i = 0; i < ROWS; i++) {
+                final CascadeRefreshEntity entity = TestDatabase.persistWithNested(em, name(i), name(i) + " (nested)");
+
+                final NoCascadeRefreshEntity noCascade = new NoCascadeRefreshEntity();
+                noCascade.name = name(i);
+                noCascade.second = entity.second;
+                em.persist(noCascade);
+            }
+        });
+    }
+
+    @AfterEach
+    void destroy() {
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+        }
+    }
+
+    @Test
+    void findsByName() {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final Map<String, CascadeRefreshEntity> found = CascadeRefreshEntity.findByNames(em, List.of(name(2), "missing", name(0), name(2)));
+
+            Assertions.assertEquals(List.of(name(2), name(0)), new ArrayList<>(found.keySet()));
+            // loaded with the lookup, where an unfetched proxy would read null from the public field
+            Assertions.assertTrue(Hibernate.isInitialized(found.get(name(2)).second));
+            Assertions.assertEquals(name(2) + " (nested)", found.get(name(2)).second.name);
+            Assertions.assertSame(CascadeRefreshEntity.findByName(em, name(0)), found.get(name(0)));
+            Assertions.assertTrue(NoCascadeRefreshEntity.findByNames(em, List.of()).isEmpty());
+        });
+    }
+
+    @Test
+    void padsAndChunksInLists() {
+        final List<String> names = IntStream.range(0, ROWS).mapToObj(FindByNamesTest::name).collect(Collectors.toList());
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final List<String> statements = StatementCapture.capture(() -> Assertions.assertEquals(ROWS, CascadeRefreshEntity.findByNames(em, names).size()));
+
+            // 600 names: a full chunk of 512, then 88 padded to 128
+            Assertions.assertEquals(List.of(512L, 128L), statements.stream().map(FindByNamesTest::parameters).collect(Collectors.toList()));
+        });
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final List<String> three = StatementCapture.capture(() -> NoCascadeRefreshEntity.findByNames(em, names.subList(0, 3)));
+            final List<String> four = StatementCapture.capture(() -> NoCascadeRefreshEntity.findByNames(em, names.subList(3, 7)));
+
+            Assertions.assertEquals(three, four);
+        });
+    }
+
+    @Test
+    void locksAndFetches() {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            SqlAssertions.assertStatements(
+                    List.of(select("CascadeRefreshEntity").join("NestedEntity").forUpdate()),
+                    () -> {
+                        final Map<String, CascadeRefreshEntity> found = CascadeRefreshEntity.findByNames(em, List.of(name(0), name(1)), LockModeType.PESSIMISTIC_WRITE, true);
+                        Assertions.assertEquals(LockModeType.PESSIMISTIC_WRITE, em.getLockMode(found.get(name(0))));
+                        Assertions.assertTrue(Hibernate.isInitialized(found.get(name(0)).second));
+                    }
+            );
+        });
+    }
+
+    private static long parameters(final String sql) {
+        return sql.chars().filter(c -> c == '?').count();
+    }
+
+    private static String name(final int index) {
+        return "entity-" + index;
+    }
+}
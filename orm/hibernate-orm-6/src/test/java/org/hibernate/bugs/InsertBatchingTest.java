@@ -0,0 +1,61 @@
+package org.hibernate.bugs;
+
+import java.util.List;
+import java.util.Locale;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.sql.StatementCapture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Checks that persisting many {@code CascadeRefreshEntity} / {@code NestedEntity} pairs fetches ids from the pooled
+ * sequences once per allocation and sends the inserts in batches.
+ */
+class InsertBatchingTest {
+
+    private static final int PAIRS = 4 * CascadeRefreshEntity.ID_ALLOCATION_SIZE;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void init() {
+        entityManagerFactory = TestDatabase.sharedEntityManagerFactory();
+    }
+
+    @AfterEach
+    void destroy() {
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+        }
+    }
+
+    @Test
+    void batchesInserts() {
+        final List<String> statements = StatementCapture.capture(() -> TestDatabase.inTransaction(entityManagerFactory, em -> {
+            for (int i = 0; i < PAIRS; i++) {
+                TestDatabase.persistWithNested(em, "entity " + i, "nested " + i);
+            }
+        }));
+
+        // a pooled optimizer reads the sequence once more than the number of allocations it uses
+        Assertions.assertTrue(count(statements, "_seq") <= 2 * (PAIRS / CascadeRefreshEntity.ID_ALLOCATION_SIZE + 1), () -> String.join("\n", statements));
+        // ordered inserts: one statement per table, prepared once and executed in batches, instead of one per row
+        Assertions.assertEquals(1, count(statements, "insert into nestedentity"));
+        Assertions.assertEquals(1, count(statements, "insert into cascaderefreshentity"));
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertEquals(
+                (long) PAIRS,
+                em.createQuery("select count(e) from CascadeRefreshEntity e", Long.class).getSingleResult()
+        ));
+    }
+
+    private static long count(final List<String> statements, final String fragment) {
+        return statements.stream().filter(sql -> sql.toLowerCase(Locale.ROOT).contains(fragment)).count();
+    }
+}
@@ -1,80 +1,60 @@
 package org.hibernate.bugs;
 
+import static org.hibernate.bugs.sql.SqlShape.select;
 import static org.junit.jupiter.api.Named.named;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
 import java.util.function.BiConsumer;
-import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.hibernate.bugs.entity.CascadeRefreshEntity;
 import org.hibernate.bugs.entity.NestedEntity;
 import org.hibernate.bugs.entity.NoCascadeRefreshEntity;
-import org.hibernate.internal.SessionImpl;
+import org.hibernate.bugs.refresh.AttributeRefresh;
+import org.hibernate.bugs.refresh.BatchRefresh;
+import org.hibernate.bugs.refresh.LockRetry;
+import org.hibernate.bugs.refresh.RefreshStrategy;
+import org.hibernate.bugs.refresh.VersionProbeRefresh;
+import org.hibernate.bugs.sql.SqlAssertions;
+import org.hibernate.bugs.sql.SqlShape;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
-import org.testcontainers.containers.MySQLContainer;
-import org.testcontainers.junit.jupiter.Container;
-import org.testcontainers.junit.jupiter.Testcontainers;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.EntityTransaction;
 import jakarta.persistence.LockModeType;
-import jakarta.persistence.Persistence;
-import jakarta.persistence.PersistenceException;
 import jakarta.persistence.PessimisticLockException;
 
 /**
  * This template demonstrates how to develop a test case for Hibernate ORM, using the Java Persistence API.
  */
-@Testcontainers
 class JPAUnitTestCase {
 
-    @Container
-    private static final MySQLContainer<?> DATABASE = new MySQLContainer<>("mysql:8.0")
-            .withCommand(
-                    "--innodb-lock-wait-timeout=0",
-                    "--character_set_server=utf8",
-                    "--collation_server=utf8_general_ci",
-                    "--explicit_defaults_for_timestamp=true",
-                    "--default_time_zone=+00:00",
-                    "--transaction_isolation=READ-COMMITTED"
-            );
-
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
     private EntityManagerFactory entityManagerFactory;
 
     @BeforeEach
     void init() {
-        entityManagerFactory = Persistence.createEntityManagerFactory(
-                "templatePU",
-                Map.of(
-                        "jakarta.persistence.jdbc.url", DATABASE.getJdbcUrl(),
-                        "jakarta.persistence.jdbc.user", DATABASE.getUsername(),
-                        "jakarta.persistence.jdbc.password", DATABASE.getPassword()
-                )
-        );
+        entityManagerFactory = TestDatabase.sharedEntityManagerFactory();
     }
 
     @AfterEach
     void destroy() {
         if (entityManagerFactory != null) {
-            entityManagerFactory.close();
+            TestDatabase.truncate(entityManagerFactory);
         }
     }
 
     @ParameterizedTest(name = "{index} - {0}")
     @MethodSource
-    void withCascadeRefresh(final BiConsumer<EntityManager, CascadeRefreshEntity> consumer, final boolean lockTest, final Class<Exception> expectedException) {
+    void withCascadeRefresh(final BiConsumer<EntityManager, CascadeRefreshEntity> consumer, final boolean lockTest, final List<SqlShape> expectedSql, final Class<Exception> expectedException) {
 
         final String firstName = "first entity";
         final String secondName = "second entity";
@@ -82,23 +62,15 @@ class JPAUnitTestCase {
         final String secondNameUpdated = secondName + " (UPDATED)";
         final String secondNameAnotherUpdate = secondName + " (UPDATEDx2)";
 
-        inTransaction(em -> {
-            final NestedEntity nested = new NestedEntity();
-            nested.name = secondName;
-
-            final CascadeRefreshEntity entity = new CascadeRefreshEntity();
-            entity.name = firstName;
-            entity.second = nested;
-            em.persist(entity);
-        });
+        TestDatabase.inTransaction(entityManagerFactory, em -> TestDatabase.persistWithNested(em, firstName, secondName));
 
-        inTransaction(em -> {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
 
             final CascadeRefreshEntity entity = CascadeRefreshEntity.findByName(em, firstName);
             Assertions.assertNotNull(entity.second);
 
-            executeAsync(() -> {
-                inTransaction(nestedEm -> {
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
                     final CascadeRefreshEntity nestedEntity = CascadeRefreshEntity.findByName(nestedEm, firstName);
                     nestedEntity.name = firstNameUpdated;
                     Assertions.assertNotNull(nestedEntity.second);
@@ -107,14 +79,14 @@ class JPAUnitTestCase {
                 });
             });
 
-            consumer.accept(em, entity);
+            SqlAssertions.assertStatements(expectedSql, () -> consumer.accept(em, entity));
 
             Assertions.assertEquals(firstNameUpdated, entity.name);
             Assertions.assertNotNull(entity.second);
             Assertions.assertEquals(secondNameUpdated, entity.second.name);
 
-            executeAsync(() -> {
-                inTransaction(nestedEm -> {
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
                     final CascadeRefreshEntity nestedEntity = CascadeRefreshEntity.findByName(nestedEm, firstNameUpdated);
                     if (expectedException != null) {
                         Assertions.assertThrows(
@@ -132,10 +104,13 @@ class JPAUnitTestCase {
     }
 
     static Stream<Arguments> withCascadeRefresh() {
-        final BiConsumer<EntityManager, CascadeRefreshEntity> refresh = (em, entity) -> em.refresh(entity, LockModeType.PESSIMISTIC_WRITE);
-        final BiConsumer<EntityManager, CascadeRefreshEntity> refreshNoLock = (em, entity) -> em.refresh(entity);
-        final BiConsumer<EntityManager, CascadeRefreshEntity> withProfile = (em, entity) -> withProfile(em, () -> em.refresh(entity, LockModeType.PESSIMISTIC_WRITE));
-        final BiConsumer<EntityManager, CascadeRefreshEntity> withGraph = (em, entity) -> withGraph(em, NoCascadeRefreshEntity.class, () -> em.refresh(entity, LockModeType.PESSIMISTIC_WRITE));
+        final BiConsumer<EntityManager, CascadeRefreshEntity> refresh = RefreshStrategy.REFRESH::refresh;
+        final BiConsumer<EntityManager, CascadeRefreshEntity> refreshNoLock = RefreshStrategy.REFRESH_NO_LOCK::refresh;
+        final BiConsumer<EntityManager, CascadeRefreshEntity> withProfile = RefreshStrategy.WITH_PROFILE::refresh;
+        final BiConsumer<EntityManager, CascadeRefreshEntity> withGraph = RefreshStrategy.WITH_GRAPH::refresh;
+        final BiConsumer<EntityManager, CascadeRefreshEntity> rootLock = RefreshStrategy.ROOT_ONLY_LOCK::refresh;
+        final BiConsumer<EntityManager, CascadeRefreshEntity> optimistic = RefreshStrategy.OPTIMISTIC::refresh;
+        final BiConsumer<EntityManager, CascadeRefreshEntity> optimisticForceIncrement = RefreshStrategy.OPTIMISTIC_FORCE_INCREMENT::refresh;
         return Stream.of(
                 /*
                 Hibernate:
@@ -163,7 +138,7 @@ class JPAUnitTestCase {
                     where
                         cre1_0.id=? for update
                  */
-                arguments(named("refresh", refresh), true, PessimisticLockException.class),
+                arguments(named("refresh", refresh), true, List.of(select("NestedEntity"), select("CascadeRefreshEntity").join("NestedEntity").forUpdate()), joinedRowLockException()),
                 /*
                 Hibernate:
                     select
@@ -190,7 +165,7 @@ class JPAUnitTestCase {
                     where
                         cre1_0.id=?
                  */
-                arguments(named("refresh (no lock)", refreshNoLock), false, null),
+                arguments(named("refresh (no lock)", refreshNoLock), false, List.of(select("NestedEntity"), select("CascadeRefreshEntity").join("NestedEntity")), null),
                 /*
                 Hibernate:
                     select
@@ -212,7 +187,7 @@ class JPAUnitTestCase {
                     where
                         cre1_0.id=? for update
                  */
-                arguments(named("with profile", withProfile), true, null),
+                arguments(named("with profile", withProfile), true, List.of(select("NestedEntity"), select("CascadeRefreshEntity").forUpdate()), null),
                 /*
                 Hibernate:
                     select
@@ -234,13 +209,76 @@ class JPAUnitTestCase {
                     where
                         cre1_0.id=? for update
                  */
-                arguments(named("with graph", withGraph), true, null)
+                arguments(named("with graph", withGraph), true, List.of(select("NestedEntity"), select("CascadeRefreshEntity").forUpdate()), null),
+                /*
+                Hibernate:
+                    select
+                        cre1_0.id
+                    from
+                        CascadeRefreshEntity cre1_0
+                    where
+                        cre1_0.id=? for update
+                Hibernate:
+                    select
+                        ne1_0.id,
+                        ne1_0.name,
+                        ne1_0.version
+                    from
+                        NestedEntity ne1_0
+                    where
+                        ne1_0.id=?
+                Hibernate:
+                    select
+                        cre1_0.id,
+                        cre1_0.name,
+                        s1_0.id,
+                        s1_0.name,
+                        s1_0.version,
+                        cre1_0.version
+                    from
+                        CascadeRefreshEntity cre1_0
+                    left join
+                        NestedEntity s1_0
+                            on s1_0.id=cre1_0.second_id
+                    where
+                        cre1_0.id=?
+                 */
+                arguments(named("root-only lock", rootLock), true, List.of(select("CascadeRefreshEntity").forUpdate(), select("NestedEntity"), select("CascadeRefreshEntity").join("NestedEntity")), null),
+                /*
+                Hibernate:
+                    select
+                        ne1_0.id,
+                        ne1_0.name,
+                        ne1_0.version
+                    from
+                        NestedEntity ne1_0
+                    where
+                        ne1_0.id=?
+                Hibernate:
+                    select
+                        cre1_0.id,
+                        cre1_0.name,
+                        s1_0.id,
+                        s1_0.name,
+                        s1_0.version,
+                        cre1_0.version
+                    from
+                        CascadeRefreshEntity cre1_0
+                    left join
+                        NestedEntity s1_0
+                            on s1_0.id=cre1_0.second_id
+                    where
+                        cre1_0.id=?
+                 */
+                arguments(named("optimistic", optimistic), false, List.of(select("NestedEntity"), select("CascadeRefreshEntity").join("NestedEntity")), null),
+                // the same statements; the version is incremented at commit
+                arguments(named("optimistic force increment", optimisticForceIncrement), false, List.of(select("NestedEntity"), select("CascadeRefreshEntity").join("NestedEntity")), null)
         );
     }
 
     @ParameterizedTest(name = "{index} - {0}")
     @MethodSource
-    void withoutCascadeRefresh(final BiConsumer<EntityManager, NoCascadeRefreshEntity> consumer, final Class<Exception> expectedException) {
+    void withoutCascadeRefresh(final BiConsumer<EntityManager, NoCascadeRefreshEntity> consumer, final List<SqlShape> expectedSql, final Class<Exception> expectedException) {
 
         final String firstName = "first entity";
         final String secondName = "second entity";
@@ -248,7 +286,7 @@ class JPAUnitTestCase {
         final String secondNameUpdated = secondName + " (UPDATED)";
         final String secondNameAnotherUpdate = secondName + " (UPDATEDx2)";
 
-        inTransaction(em -> {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
             final NestedEntity nested = new NestedEntity();
             nested.name = secondName;
 
@@ -258,13 +296,13 @@ class JPAUnitTestCase {
             em.persist(entity);
         });
 
-        inTransaction(em -> {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
 
             final NoCascadeRefreshEntity entity = NoCascadeRefreshEntity.findByName(em, firstName);
             Assertions.assertNotNull(entity.second);
 
-            executeAsync(() -> {
-                inTransaction(nestedEm -> {
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
                     final NoCascadeRefreshEntity nestedEntity = NoCascadeRefreshEntity.findByName(nestedEm, firstName);
                     nestedEntity.name = firstNameUpdated;
                     Assertions.assertNotNull(nestedEntity.second);
@@ -273,14 +311,14 @@ class JPAUnitTestCase {
                 });
             });
 
-            consumer.accept(em, entity);
+            SqlAssertions.assertStatements(expectedSql, () -> consumer.accept(em, entity));
 
             Assertions.assertEquals(firstNameUpdated, entity.name);
             Assertions.assertNotNull(entity.second);
             Assertions.assertEquals(secondName, entity.second.name);
 
-            executeAsync(() -> {
-                inTransaction(nestedEm -> {
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
                     final NoCascadeRefreshEntity nestedEntity = NoCascadeRefreshEntity.findByName(nestedEm, firstNameUpdated);
                     if (expectedException != null) {
                         Assertions.assertThrows(
@@ -298,10 +336,13 @@ class JPAUnitTestCase {
     }
 
     static Stream<Arguments> withoutCascadeRefresh() {
-        final BiConsumer<EntityManager, NoCascadeRefreshEntity> refresh = (em, entity) -> em.refresh(entity, LockModeType.PESSIMISTIC_WRITE);
-        final BiConsumer<EntityManager, NoCascadeRefreshEntity> refreshNoLock = (em, entity) -> em.refresh(entity);
-        final BiConsumer<EntityManager, NoCascadeRefreshEntity> withProfile = (em, entity) -> withProfile(em, () -> em.refresh(entity, LockModeType.PESSIMISTIC_WRITE));
-        final BiConsumer<EntityManager, NoCascadeRefreshEntity> withGraph = (em, entity) -> withGraph(em, NoCascadeRefreshEntity.class, () -> em.refresh(entity, LockModeType.PESSIMISTIC_WRITE));
+        final BiConsumer<EntityManager, NoCascadeRefreshEntity> refresh = RefreshStrategy.REFRESH::refresh;
+        final BiConsumer<EntityManager, NoCascadeRefreshEntity> refreshNoLock = RefreshStrategy.REFRESH_NO_LOCK::refresh;
+        final BiConsumer<EntityManager, NoCascadeRefreshEntity> withProfile = RefreshStrategy.WITH_PROFILE::refresh;
+        final BiConsumer<EntityManager, NoCascadeRefreshEntity> withGraph = RefreshStrategy.WITH_GRAPH::refresh;
+        final BiConsumer<EntityManager, NoCascadeRefreshEntity> rootLock = RefreshStrategy.ROOT_ONLY_LOCK::refresh;
+        final BiConsumer<EntityManager, NoCascadeRefreshEntity> optimistic = RefreshStrategy.OPTIMISTIC::refresh;
+        final BiConsumer<EntityManager, NoCascadeRefreshEntity> optimisticForceIncrement = RefreshStrategy.OPTIMISTIC_FORCE_INCREMENT::refresh;
         return Stream.of(
                 /*
                 Hibernate:
@@ -320,7 +361,7 @@ class JPAUnitTestCase {
                     where
                         ncre1_0.id=? for update
                  */
-                arguments(named("refresh", refresh), PessimisticLockException.class),
+                arguments(named("refresh", refresh), List.of(select("NoCascadeRefreshEntity").join("NestedEntity").forUpdate()), joinedRowLockException()),
                 /*
                 Hibernate:
                     select
@@ -338,7 +379,7 @@ class JPAUnitTestCase {
                     where
                         ncre1_0.id=?
                  */
-                arguments(named("refresh (no lock)", refreshNoLock), null),
+                arguments(named("refresh (no lock)", refreshNoLock), List.of(select("NoCascadeRefreshEntity").join("NestedEntity")), null),
                 /*
                 Hibernate:
                     select
@@ -351,7 +392,7 @@ class JPAUnitTestCase {
                     where
                         ncre1_0.id=? for update
                  */
-                arguments(named("with profile", withProfile), null),
+                arguments(named("with profile", withProfile), List.of(select("NoCascadeRefreshEntity").forUpdate()), null),
                 /*
                 Hibernate:
                     select
@@ -364,69 +405,353 @@ class JPAUnitTestCase {
                     where
                         ncre1_0.id=? for update
                  */
-                arguments(named("with graph", withGraph), null)
+                arguments(named("with graph", withGraph), List.of(select("NoCascadeRefreshEntity").forUpdate()), null),
+                /*
+                Hibernate:
+                    select
+                        ncre1_0.id
+                    from
+                        NoCascadeRefreshEntity ncre1_0
+                    where
+                        ncre1_0.id=? for update
+                Hibernate:
+                    select
+                        ncre1_0.id,
+                        ncre1_0.name,
+                        s1_0.id,
+                        s1_0.name,
+                        s1_0.version,
+                        ncre1_0.version
+                    from
+                        NoCascadeRefreshEntity ncre1_0
+                    left join
+                        NestedEntity s1_0
+                            on s1_0.id=ncre1_0.second_id
+                    where
+                        ncre1_0.id=?
+                 */
+                arguments(named("root-only lock", rootLock), List.of(select("NoCascadeRefreshEntity").forUpdate(), select("NoCascadeRefreshEntity").join("NestedEntity")), null),
+                /*
+                Hibernate:
+                    select
+                        ncre1_0.id,
+                        ncre1_0.name,
+                        s1_0.id,
+                        s1_0.name,
+                        s1_0.version,
+                        ncre1_0.version
+                    from
+                        NoCascadeRefreshEntity ncre1_0
+                    left join
+                        NestedEntity s1_0
+                            on s1_0.id=ncre1_0.second_id
+                    where
+                        ncre1_0.id=?
+                 */
+                arguments(named("optimistic", optimistic), List.of(select("NoCascadeRefreshEntity").join("NestedEntity")), null),
+                // the same statement; the version is incremented at commit
+                arguments(named("optimistic force increment", optimisticForceIncrement), List.of(select("NoCascadeRefreshEntity").join("NestedEntity")), null)
         );
     }
 
-    private void inTransaction(final Consumer<EntityManager> tx) {
-        final EntityManager em = entityManagerFactory.createEntityManager();
-        final EntityTransaction transaction = em.getTransaction();
-        transaction.begin();
-        try {
-            tx.accept(em);
-            if (transaction.getRollbackOnly()) {
-                transaction.rollback();
-            } else {
-                transaction.commit();
+    @Test
+    void refreshAll() {
+
+        final List<String> names = List.of("first entity", "second entity", "third entity");
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            for (final String name : names) {
+                TestDatabase.persistWithNested(em, name, name + " (nested)");
             }
-        } catch (final Exception e) {
-            transaction.rollback();
-            throw e;
-        } finally {
-            em.close();
-        }
-    }
+        });
 
-    private void executeAsync(final Runnable runnable) {
-        try {
-            executor.submit(runnable).get();
-        } catch (final InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } catch (final ExecutionException e) {
-            throw new RuntimeException(e.getCause());
-        }
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+
+            final List<CascadeRefreshEntity> entities = names.stream()
+                    .map(name -> CascadeRefreshEntity.findByName(em, name))
+                    .collect(Collectors.toList());
+
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
+                    for (final String name : names) {
+                        final CascadeRefreshEntity nestedEntity = CascadeRefreshEntity.findByName(nestedEm, name);
+                        nestedEntity.name = name + " (UPDATED)";
+                        nestedEntity.second.name = name + " (nested) (UPDATED)";
+                    }
+                });
+            });
+
+            /*
+            Hibernate:
+                select
+                    cre1_0.id,
+                    cre1_0.name,
+                    cre1_0.second_id,
+                    cre1_0.version
+                from
+                    CascadeRefreshEntity cre1_0
+                where
+                    cre1_0.id in (?, ?, ?) for update
+            Hibernate:
+                select
+                    ne1_0.id,
+                    ne1_0.name,
+                    ne1_0.version
+                from
+                    NestedEntity ne1_0
+                where
+                    ne1_0.id in (?, ?, ?)
+             */
+            SqlAssertions.assertStatements(
+                    List.of(select("CascadeRefreshEntity").forUpdate(), select("NestedEntity")),
+                    () -> BatchRefresh.refreshAll(em, entities, LockModeType.PESSIMISTIC_WRITE)
+            );
+
+            for (int i = 0; i < names.size(); i++) {
+                final CascadeRefreshEntity entity = entities.get(i);
+                Assertions.assertEquals(names.get(i) + " (UPDATED)", entity.name);
+                Assertions.assertEquals(names.get(i) + " (nested) (UPDATED)", entity.second.name);
+                Assertions.assertEquals(LockModeType.PESSIMISTIC_WRITE, em.getLockMode(entity));
+            }
+
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
+                    final CascadeRefreshEntity nestedEntity = CascadeRefreshEntity.findByName(nestedEm, names.get(0) + " (UPDATED)");
+                    nestedEm.refresh(nestedEntity.second, LockModeType.PESSIMISTIC_WRITE);
+                    Assertions.assertThrows(
+                            PessimisticLockException.class,
+                            () -> nestedEm.refresh(nestedEntity, LockModeType.PESSIMISTIC_WRITE)
+                    );
+                });
+            });
+        });
     }
 
-    private static void withProfile(final EntityManager em, final Runnable runnable) {
-        boolean profileAvailable = true;
-        try {
-            ((SessionImpl) em).enableFetchProfile("onRefresh");
-        } catch (final PersistenceException unused) {
-            // profile not available
-            profileAvailable = false;
-        }
-        try {
-            runnable.run();
-        } finally {
-            if (profileAvailable) {
-                ((SessionImpl) em).disableFetchProfile("onRefresh");
+    @ParameterizedTest
+    @EnumSource(value = LockModeType.class, names = {"OPTIMISTIC", "OPTIMISTIC_FORCE_INCREMENT"})
+    void optimisticRefreshAll(final LockModeType lockMode) {
+
+        final List<String> names = List.of("first entity", "second entity", "third entity");
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            for (final String name : names) {
+                TestDatabase.persistWithNested(em, name, name + " (nested)");
+            }
+        });
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+
+            final List<CascadeRefreshEntity> entities = names.stream()
+                    .map(name -> CascadeRefreshEntity.findByName(em, name))
+                    .collect(Collectors.toList());
+
+            // no row lock: the version is checked, or incremented, at commit
+            SqlAssertions.assertStatements(
+                    List.of(select("CascadeRefreshEntity"), select("NestedEntity")),
+                    () -> BatchRefresh.refreshAll(em, entities, lockMode)
+            );
+
+            for (final CascadeRefreshEntity entity : entities) {
+                Assertions.assertEquals(lockMode, em.getLockMode(entity));
             }
+        });
+
+        final long expectedVersion = lockMode == LockModeType.OPTIMISTIC_FORCE_INCREMENT ? 1L : 0L;
+        for (final String name : names) {
+            Assertions.assertEquals(expectedVersion, version(name));
         }
+
+        // a concurrent update of a root fails the commit
+        final RuntimeException failure = Assertions.assertThrows(RuntimeException.class, () -> TestDatabase.inTransaction(entityManagerFactory, em -> {
+
+            final List<CascadeRefreshEntity> entities = names.stream()
+                    .map(name -> CascadeRefreshEntity.findByName(em, name))
+                    .collect(Collectors.toList());
+            BatchRefresh.refreshAll(em, entities, lockMode);
+
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> CascadeRefreshEntity.findByName(nestedEm, names.get(0)).name = names.get(0) + " (UPDATED)");
+            });
+        }));
+        Assertions.assertTrue(LockRetry.isLockFailure(failure), failure::toString);
+        Assertions.assertEquals(expectedVersion, version(names.get(1)));
     }
 
-    private static void withGraph(final EntityManager em, final Class<?> entityClass, final Runnable runnable) {
-        // TODO check if the graph is clear
-        ((SessionImpl) em).getLoadQueryInfluencers()
-                .getEffectiveEntityGraph()
-                .applyConfiguredGraph(
-                        Map.of(
-                                "jakarta.persistence.fetchgraph", ((SessionImpl) em).createEntityGraph(entityClass)
-                        )
-                );
+    @Test
+    void versionProbeRefresh() {
+
+        final String firstName = "first entity";
+        final String secondName = "second entity";
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> TestDatabase.persistWithNested(em, firstName, secondName));
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+
+            final CascadeRefreshEntity entity = CascadeRefreshEntity.findByName(em, firstName);
+
+            /*
+            Hibernate:
+                select
+                    cre1_0.id,
+                    cre1_0.version
+                from
+                    CascadeRefreshEntity cre1_0
+                where
+                    cre1_0.id in (?) for update
+            Hibernate:
+                select
+                    ne1_0.id,
+                    ne1_0.version
+                from
+                    NestedEntity ne1_0
+                where
+                    ne1_0.id in (?)
+             */
+            SqlAssertions.assertStatements(
+                    List.of(select("CascadeRefreshEntity").forUpdate(), select("NestedEntity")),
+                    () -> Assertions.assertEquals(0, VersionProbeRefresh.refresh(em, entity, LockModeType.PESSIMISTIC_WRITE))
+            );
+            Assertions.assertEquals(LockModeType.PESSIMISTIC_WRITE, em.getLockMode(entity));
+
+            // the root row is locked, its nested row is not
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
+                    final NestedEntity nested = nestedEm.find(NestedEntity.class, entity.second.id);
+                    nested.name = secondName + " (UPDATED)";
+                });
+            });
+
+            Assertions.assertEquals(1, VersionProbeRefresh.refresh(em, entity, LockModeType.PESSIMISTIC_WRITE));
+            Assertions.assertEquals(secondName + " (UPDATED)", entity.second.name);
+
+            // unflushed changes are discarded, as with refresh
+            entity.name = firstName + " (DISCARDED)";
+            Assertions.assertEquals(1, VersionProbeRefresh.refresh(em, entity, LockModeType.PESSIMISTIC_WRITE));
+            Assertions.assertEquals(firstName, entity.name);
+        });
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = LockModeType.class, names = {"OPTIMISTIC", "OPTIMISTIC_FORCE_INCREMENT"})
+    void optimisticVersionProbeRefresh(final LockModeType lockMode) {
+
+        final String firstName = "first entity";
+        final String secondName = "second entity";
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> TestDatabase.persistWithNested(em, firstName, secondName));
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+
+            final CascadeRefreshEntity entity = CascadeRefreshEntity.findByName(em, firstName);
+
+            // no row lock: the version is checked, or incremented, at commit
+            SqlAssertions.assertStatements(
+                    List.of(select("CascadeRefreshEntity"), select("NestedEntity")),
+                    () -> Assertions.assertEquals(0, VersionProbeRefresh.refresh(em, entity, lockMode))
+            );
+            Assertions.assertEquals(lockMode, em.getLockMode(entity));
+        });
+
+        final long expectedVersion = lockMode == LockModeType.OPTIMISTIC_FORCE_INCREMENT ? 1L : 0L;
+        Assertions.assertEquals(expectedVersion, version(firstName));
+
+        // a concurrent update of the root fails the commit
+        final RuntimeException failure = Assertions.assertThrows(RuntimeException.class, () -> TestDatabase.inTransaction(entityManagerFactory, em -> {
+
+            final CascadeRefreshEntity entity = CascadeRefreshEntity.findByName(em, firstName);
+            VersionProbeRefresh.refresh(em, entity, lockMode);
+
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> CascadeRefreshEntity.findByName(nestedEm, firstName).name = firstName + " (UPDATED)");
+            });
+        }));
+        Assertions.assertTrue(LockRetry.isLockFailure(failure), failure::toString);
+    }
+
+    @Test
+    void attributeRefresh() {
+
+        final String firstName = "first entity";
+        final String secondName = "second entity";
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> TestDatabase.persistWithNested(em, firstName, secondName));
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+
+            final CascadeRefreshEntity entity = CascadeRefreshEntity.findByName(em, firstName);
+
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
+                    final CascadeRefreshEntity nestedEntity = CascadeRefreshEntity.findByName(nestedEm, firstName);
+                    nestedEntity.name = firstName + " (UPDATED)";
+                    nestedEntity.second.name = secondName + " (UPDATED)";
+                });
+            });
+
+            /*
+            Hibernate:
+                select
+                    cre1_0.id,
+                    cre1_0.name,
+                    cre1_0.version
+                from
+                    CascadeRefreshEntity cre1_0
+                where
+                    cre1_0.id in (?) for update
+             */
+            SqlAssertions.assertStatements(
+                    List.of(select("CascadeRefreshEntity").forUpdate()),
+                    () -> AttributeRefresh.refresh(em, entity, LockModeType.PESSIMISTIC_WRITE, "name", "version")
+            );
+            Assertions.assertEquals(firstName + " (UPDATED)", entity.name);
+            Assertions.assertEquals(secondName, entity.second.name);
+            Assertions.assertEquals(LockModeType.PESSIMISTIC_WRITE, em.getLockMode(entity));
+
+            // the snapshot matches the refreshed attributes, so there is nothing to flush
+            SqlAssertions.assertStatements(List.of(), em::flush);
+
+            // the root row is locked, its nested row is not
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
+                    final NestedEntity nested = nestedEm.find(NestedEntity.class, entity.second.id);
+                    nested.name = secondName + " (UPDATEDx2)";
+                });
+            });
+
+            // unflushed changes of the refreshed attribute are discarded, the others stay pending
+            final NestedEntity replacement = new NestedEntity();
+            replacement.name = secondName + " (REPLACEMENT)";
+            em.persist(replacement);
+            entity.name = firstName + " (DISCARDED)";
+            entity.second = replacement;
+            AttributeRefresh.refresh(em, entity, LockModeType.NONE, "name");
+            Assertions.assertEquals(firstName + " (UPDATED)", entity.name);
+            Assertions.assertSame(replacement, entity.second);
+
+            Assertions.assertThrows(IllegalArgumentException.class, () -> AttributeRefresh.refresh(em, entity, LockModeType.NONE, "unknown"));
+        });
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final CascadeRefreshEntity entity = CascadeRefreshEntity.findByName(em, firstName + " (UPDATED)");
+            Assertions.assertEquals(secondName + " (REPLACEMENT)", entity.second.name);
+        });
+    }
+
+    /**
+     * InnoDB locks every row of a {@code for update} join, H2 only the rows of the first table.
+     */
+    private static Class<? extends Exception> joinedRowLockException() {
+        return TestDatabase.isH2() ? null : PessimisticLockException.class;
+    }
+
+    private long version(final String name) {
+        final EntityManager em = entityManagerFactory.createEntityManager();
         try {
-            runnable.run();
+            return ((Number) em.createNativeQuery("select version from CascadeRefreshEntity where name = :name")
+                    .setParameter("name", name)
+                    .getSingleResult()).longValue();
         } finally {
-            ((SessionImpl) em).getLoadQueryInfluencers().getEffectiveEntityGraph().clear();
+            em.close();
         }
     }
 }
@@ -0,0 +1,182 @@
+package org.hibernate.bugs;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.load.LockContentionHarness;
+import org.hibernate.bugs.metrics.LockMetrics;
+import org.hibernate.bugs.metrics.PoolMetrics;
+import org.hibernate.bugs.refresh.LockRetry;
+import org.hibernate.bugs.refresh.RefreshStrategy;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Runs {@link LockContentionHarness} for every refresh strategy. The defaults keep the suite short; scale up with
+ * {@code -Dharness.workers}, {@code -Dharness.operations}, {@code -Dharness.rows} and {@code -Dharness.nestedRows}.
+ * {@link #optimisticCrossover} runs the pessimistic and optimistic strategies over the numbers of rows in
+ * {@code -Dharness.contentionRows}, fewest rows being the highest contention; it is tagged {@code slow}, so only the
+ * {@code slow} profile runs it.
+ */
+class LockContentionHarnessTest {
+
+    private static final int WORKERS = Integer.getInteger("harness.workers", 100);
+    private static final int OPERATIONS = Integer.getInteger("harness.operations", 20);
+    private static final int ROWS = Integer.getInteger("harness.rows", 20);
+    private static final int NESTED_ROWS = Integer.getInteger("harness.nestedRows", 5);
+    private static final List<Integer> CONTENTION_ROWS = Arrays.stream(System.getProperty("harness.contentionRows", "200,20,5,1").split(","))
+            .map(String::trim)
+            .map(Integer::valueOf)
+            .collect(Collectors.toList());
+    private static final List<RefreshStrategy> CROSSOVER_STRATEGIES = List.of(
+            RefreshStrategy.REFRESH, RefreshStrategy.ROOT_ONLY_LOCK, RefreshStrategy.OPTIMISTIC, RefreshStrategy.OPTIMISTIC_FORCE_INCREMENT
+    );
+
+    /**
+     * Strategies whose lock is taken by {@code em.refresh}, which {@link LockMetrics} times.
+     */
+    private static final Set<RefreshStrategy> LISTENER_LOCKING = EnumSet.of(RefreshStrategy.REFRESH, RefreshStrategy.WITH_PROFILE, RefreshStrategy.WITH_GRAPH);
+    private static final Logger LOG = Logger.getLogger(LockContentionHarnessTest.class);
+
+    private static EntityManagerFactory entityManagerFactory;
+    private static LockMetrics lockMetrics;
+    private static PoolMetrics poolMetrics;
+
+    @BeforeAll
+    static void init() {
+        // update rather than create-drop, so closing this factory keeps the schema of the shared one
+        entityManagerFactory = TestDatabase.createEntityManagerFactory(
+                Map.of(
+                        "hibernate.hbm2ddl.auto", "update",
+                        "hibernate.show_sql", "false",
+                        "hibernate.session.events.log", "false"
+                )
+        );
+        lockMetrics = LockMetrics.install(entityManagerFactory);
+        poolMetrics = PoolMetrics.install(entityManagerFactory);
+    }
+
+    @AfterEach
+    void truncate() {
+        TestDatabase.truncate(entityManagerFactory);
+    }
+
+    @AfterAll
+    static void destroy() {
+        if (entityManagerFactory != null) {
+            entityManagerFactory.close();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(RefreshStrategy.class)
+    void contention(final RefreshStrategy strategy) throws InterruptedException {
+        final LockContentionHarness harness = new LockContentionHarness(entityManagerFactory)
+                .withWorkers(WORKERS)
+                .withOperationsPerWorker(OPERATIONS)
+                .withRows(ROWS, NESTED_ROWS);
+        harness.seed();
+        lockMetrics.reset();
+        poolMetrics.reset();
+
+        final LockContentionHarness.Report report = harness.run(strategy);
+        LOG.infof("%s%s%n%s", report, lockMetrics.snapshot().values(), poolMetrics);
+
+        assertReport(report);
+        // only a pessimistic em.refresh goes through the timed listeners
+        Assertions.assertEquals(LISTENER_LOCKING.contains(strategy), lockMetrics.get(CascadeRefreshEntity.class).acquisitions() > 0, () -> lockMetrics.snapshot().toString());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = RefreshStrategy.class, names = {"REFRESH", "ROOT_ONLY_LOCK"})
+    void contentionWithRetry(final RefreshStrategy strategy) throws InterruptedException {
+        final LockRetry retry = new LockRetry(entityManagerFactory);
+        final LockContentionHarness harness = new LockContentionHarness(entityManagerFactory)
+                .withWorkers(WORKERS)
+                .withOperationsPerWorker(OPERATIONS)
+                .withRows(ROWS, NESTED_ROWS)
+                .withRetry(retry);
+        harness.seed();
+        lockMetrics.reset();
+        poolMetrics.reset();
+
+        final LockContentionHarness.Report report = harness.run(strategy);
+        LOG.infof("%s%s%n%s", report, retry.stats(), poolMetrics);
+
+        assertReport(report);
+        Assertions.assertEquals(WORKERS * OPERATIONS, retry.stats().calls());
+        // an operation fails on a lock only once its attempts are spent
+        Assertions.assertEquals(retry.stats().giveUps(), report.operations.values().stream().mapToLong(stats -> stats.lockFailures).sum());
+        Assertions.assertEquals(retry.stats().lockFailures(), retry.stats().retries() + retry.stats().giveUps());
+        Assertions.assertTrue(retry.stats().attempts() >= retry.stats().calls() + retry.stats().retries());
+    }
+
+    /**
+     * Every refresh updates the root it refreshed, so the optimistic strategies conflict on the root version where the
+     * pessimistic ones wait for (here: fail fast on) its row lock. All runs retry lock failures; the conflict rate is
+     * the share of attempts that failed on a lock or a version.
+     */
+    @Test
+    @Tag("slow")
+    void optimisticCrossover() throws InterruptedException {
+        // warms up the JIT and the pool, so that the first measured run is not the slowest
+        crossoverHarness(CONTENTION_ROWS.get(0), new LockRetry(entityManagerFactory)).run(CROSSOVER_STRATEGIES.get(0));
+        TestDatabase.truncate(entityManagerFactory);
+
+        final StringBuilder table = new StringBuilder(String.format("%n%6s  %-28s %10s %10s %9s%n", "rows", "strategy", "ops/s", "conflicts", "give-ups"));
+        for (final int rows : CONTENTION_ROWS) {
+            for (final RefreshStrategy strategy : CROSSOVER_STRATEGIES) {
+                final LockRetry retry = new LockRetry(entityManagerFactory);
+                final LockContentionHarness.Report report = crossoverHarness(rows, retry).run(strategy);
+                TestDatabase.truncate(entityManagerFactory);
+                final LockRetry.Stats stats = retry.stats();
+                table.append(String.format("%6d  %-28s %10.0f %9.2f%% %9d%n", rows, strategy, report.throughput(), stats.lockFailures() * 100.0 / stats.attempts(), stats.giveUps()));
+
+                assertReport(report);
+                Assertions.assertEquals(stats.giveUps(), report.operations.values().stream().mapToLong(operation -> operation.lockFailures).sum());
+            }
+        }
+        LOG.info(table);
+    }
+
+    /**
+     * Every operation ran, none failed other than on a lock, and none waited past the pool's connection timeout.
+     */
+    private static void assertReport(final LockContentionHarness.Report report) {
+        Assertions.assertEquals(WORKERS * OPERATIONS, report.total(), report::toString);
+        Assertions.assertTrue(report.throughput() > 0, report::toString);
+        for (final Map.Entry<LockContentionHarness.Operation, LockContentionHarness.OperationStats> entry : report.operations.entrySet()) {
+            final LockContentionHarness.OperationStats stats = entry.getValue();
+            Assertions.assertTrue(stats.count > 0, () -> entry.getKey() + " never ran: " + report);
+            Assertions.assertEquals(0, stats.errors, report::toString);
+            Assertions.assertTrue(stats.lockFailures <= stats.count, report::toString);
+            Assertions.assertTrue(stats.p50 <= stats.p99 && stats.p99 <= stats.p999, report::toString);
+        }
+        Assertions.assertEquals(0, poolMetrics.timeouts(), poolMetrics::toString);
+    }
+
+    private static LockContentionHarness crossoverHarness(final int rows, final LockRetry retry) {
+        final LockContentionHarness harness = new LockContentionHarness(entityManagerFactory)
+                .withWorkers(WORKERS)
+                .withOperationsPerWorker(OPERATIONS)
+                .withRows(rows, NESTED_ROWS)
+                .withRootUpdate(true)
+                .withRetry(retry);
+        harness.seed();
+        return harness;
+    }
+}
@@ -0,0 +1,91 @@
+package org.hibernate.bugs;
+
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.metrics.LockFootprint;
+import org.hibernate.bugs.refresh.OrderedLockRefresh;
+import org.hibernate.bugs.refresh.RefreshStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Checks which rows {@link LockFootprint} sees locked after each kind of refresh.
+ */
+class LockFootprintTest {
+
+    private EntityManagerFactory entityManagerFactory;
+    private Long id;
+    private Long nestedId;
+
+    @BeforeEach
+    void init() {
+        entityManagerFactory = TestDatabase.sharedEntityManagerFactory();
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final CascadeRefreshEntity entity = TestDatabase.persistWithNested(em, "first entity", "second entity");
+
+            id = entity.id;
+            nestedId = entity.second.id;
+        });
+    }
+
+    @AfterEach
+    void destroy() {
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+        }
+    }
+
+    @Test
+    void rootOnlyRefreshLocksOneRow() {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            RefreshStrategy.ROOT_ONLY_LOCK.refresh(em, em.find(CascadeRefreshEntity.class, id));
+
+            final LockFootprint footprint = LockFootprint.of(em);
+            Assertions.assertEquals(1, footprint.rowCount(), footprint::toString);
+            Assertions.assertTrue(footprint.isLocked("CascadeRefreshEntity", id), footprint::toString);
+        });
+    }
+
+    @Test
+    void lockingRefreshLocksTheJoinedRowOnInnoDB() {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            RefreshStrategy.REFRESH.refresh(em, em.find(CascadeRefreshEntity.class, id));
+
+            final LockFootprint footprint = LockFootprint.of(em);
+            Assertions.assertTrue(footprint.isLocked("CascadeRefreshEntity", id), footprint::toString);
+            // H2 locks the rows of the first table of the join only
+            Assertions.assertEquals(!TestDatabase.isH2(), footprint.isLocked("NestedEntity", nestedId), footprint::toString);
+        });
+    }
+
+    @Test
+    void orderedRefreshLocksTheCascadedRow() {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            OrderedLockRefresh.refreshAll(em, List.of(em.find(CascadeRefreshEntity.class, id)), LockModeType.PESSIMISTIC_WRITE);
+
+            final LockFootprint footprint = LockFootprint.of(em);
+            Assertions.assertEquals(Set.of("cascaderefreshentity", "nestedentity"), footprint.tables(), footprint::toString);
+            Assertions.assertEquals(Set.of(String.valueOf(id)), footprint.keys("CascadeRefreshEntity"));
+            Assertions.assertEquals(Set.of(String.valueOf(nestedId)), footprint.keys("NestedEntity"));
+        });
+    }
+
+    @Test
+    void plainReadsLockNothing() {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            RefreshStrategy.REFRESH_NO_LOCK.refresh(em, em.find(CascadeRefreshEntity.class, id));
+
+            final LockFootprint footprint = LockFootprint.of(em);
+            Assertions.assertEquals(0, footprint.rowCount(), footprint::toString);
+        });
+    }
+}
@@ -0,0 +1,94 @@
+package org.hibernate.bugs;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.metrics.LockMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PessimisticLockException;
+
+/**
+ * Checks what {@link LockMetrics} records for pessimistic refresh, find and lock calls.
+ */
+class LockMetricsTest {
+
+    private static final long HOLD_MILLIS = 50;
+
+    private EntityManagerFactory entityManagerFactory;
+    private LockMetrics metrics;
+
+    @BeforeEach
+    void init() {
+        // a factory of its own, since installing the metrics wraps its listeners and turns its statistics on for good;
+        // update rather than create-drop, so closing it keeps the schema of the shared one
+        entityManagerFactory = TestDatabase.createEntityManagerFactory(Map.of("hibernate.hbm2ddl.auto", "update"));
+        metrics = LockMetrics.install(entityManagerFactory);
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> TestDatabase.persistWithNested(em, "first entity", "second entity"));
+        metrics.reset();
+    }
+
+    @AfterEach
+    void destroy() {
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+            entityManagerFactory.close();
+        }
+    }
+
+    @Test
+    void recordsAcquisitionAndHold() {
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final CascadeRefreshEntity entity = CascadeRefreshEntity.findByName(em, "first entity");
+            em.refresh(entity, LockModeType.PESSIMISTIC_WRITE);
+            em.find(NestedEntity.class, entity.second.id, LockModeType.PESSIMISTIC_WRITE);
+            TestDatabase.sleep(HOLD_MILLIS);
+            // reading without a lock records nothing
+            em.refresh(entity);
+        });
+
+        final LockMetrics.EntityLockStats root = metrics.get(CascadeRefreshEntity.class);
+        Assertions.assertEquals(1, root.acquisitions());
+        Assertions.assertEquals(1, root.hold.getTotalCount());
+        Assertions.assertTrue(root.hold.getMinValue() >= TimeUnit.MILLISECONDS.toMicros(HOLD_MILLIS), root::toString);
+        Assertions.assertEquals(0, root.failures);
+
+        final LockMetrics.EntityLockStats nested = metrics.get(NestedEntity.class);
+        Assertions.assertEquals(1, nested.acquisitions());
+        Assertions.assertEquals(1, nested.hold.getTotalCount());
+        Assertions.assertTrue(nested.hold.getMaxValue() <= root.hold.getMaxValue(), nested::toString);
+    }
+
+    @Test
+    void recordsLockFailures() {
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final CascadeRefreshEntity entity = CascadeRefreshEntity.findByName(em, "first entity");
+            em.lock(entity, LockModeType.PESSIMISTIC_WRITE);
+
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
+                    final CascadeRefreshEntity nestedEntity = nestedEm.find(CascadeRefreshEntity.class, entity.id);
+                    Assertions.assertThrows(
+                            PessimisticLockException.class,
+                            () -> nestedEm.refresh(nestedEntity, LockModeType.PESSIMISTIC_WRITE)
+                    );
+                });
+            });
+        });
+
+        final LockMetrics.EntityLockStats root = metrics.get(CascadeRefreshEntity.class);
+        Assertions.assertEquals(1, root.acquisitions());
+        Assertions.assertEquals(1, root.failures);
+        Assertions.assertEquals(0, metrics.get(NestedEntity.class).failures);
+    }
+}
@@ -0,0 +1,186 @@
+package org.hibernate.bugs;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.refresh.OrderedLockRefresh;
+import org.hibernate.bugs.refresh.RefreshStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Transactions that lock overlapping {@code CascadeRefreshEntity} rows in different orders deadlock with one
+ * pessimistic refresh per entity, and never with {@link OrderedLockRefresh}.
+ * <p>
+ * The factory waits for locks (two seconds) instead of failing fast like the other tests, otherwise conflicting
+ * transactions would fail before they could form a deadlock.
+ */
+class LockOrderingTest {
+
+    private static final int ROWS = 6;
+    private static final int NESTED_ROWS = 2;
+    private static final int WORKERS = 4;
+    private static final int TRANSACTIONS_PER_WORKER = 25;
+    private static final int ROWS_PER_TRANSACTION = 3;
+    /**
+     * SQLState of a deadlock victim on both MySQL and H2.
+     */
+    private static final String DEADLOCK = "40001";
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(WORKERS);
+    private EntityManagerFactory entityManagerFactory;
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void init() {
+        // update rather than create-drop, so closing this factory keeps the schema of the shared one
+        entityManagerFactory = TestDatabase.createEntityManagerFactory(
+                Map.of(
+                        "hibernate.hbm2ddl.auto", "update",
+                        "hibernate.show_sql", "false",
+                        "hibernate.hikari.connectionInitSql", TestDatabase.isH2() ? "set lock_timeout 2000" : "set session innodb_lock_wait_timeout = 2"
+                )
+        );
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final List<NestedEntity> nested = new ArrayList<>();
+            for (int i = 0; i < NESTED_ROWS; i++) {
+                final NestedEntity entity = new NestedEntity();
+                entity.name = "nested " + i;
+                nested.add(entity);
+            }
+            for (int i = 0; i < ROWS; i++) {
+                final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+                entity.name = "entity " + i;
+                entity.second = nested.get(i % NESTED_ROWS);
+                em.persist(entity);
+                ids.add(entity.id);
+            }
+        });
+    }
+
+    @AfterEach
+    void destroy() {
+        executor.shutdownNow();
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+            entityManagerFactory.close();
+        }
+    }
+
+    @Test
+    void refreshesInCallerOrderDeadlock() throws Exception {
+        final CyclicBarrier firstLocked = new CyclicBarrier(2);
+        final List<Long> forward = List.of(ids.get(0), ids.get(1));
+        final List<Long> backward = List.of(ids.get(1), ids.get(0));
+
+        final List<Future<Throwable>> outcomes = new ArrayList<>();
+        for (final List<Long> order : List.of(forward, backward)) {
+            outcomes.add(executor.submit(() -> failure(() -> TestDatabase.inTransaction(entityManagerFactory, em -> {
+                for (final Long id : order) {
+                    RefreshStrategy.REFRESH.refresh(em, em.find(CascadeRefreshEntity.class, id));
+                    if (id.equals(order.get(0))) {
+                        await(firstLocked);
+                    }
+                }
+            }))));
+        }
+
+        int deadlocks = 0;
+        for (final Future<Throwable> outcome : outcomes) {
+            if (isDeadlock(outcome.get(30, TimeUnit.SECONDS))) {
+                deadlocks++;
+            }
+        }
+        Assertions.assertEquals(1, deadlocks);
+    }
+
+    @Test
+    void orderedLockingNeverDeadlocks() throws Exception {
+        final AtomicInteger committed = new AtomicInteger();
+        final SplittableRandom seeds = new SplittableRandom(42);
+
+        final List<Future<List<Throwable>>> workers = new ArrayList<>();
+        for (int w = 0; w < WORKERS; w++) {
+            final SplittableRandom random = seeds.split();
+            workers.add(executor.submit(() -> {
+                final List<Throwable> failures = new ArrayList<>();
+                for (int t = 0; t < TRANSACTIONS_PER_WORKER; t++) {
+                    final List<Long> shuffled = new ArrayList<>(ids);
+                    Collections.shuffle(shuffled, new Random(random.nextLong()));
+                    final List<Long> targets = shuffled.subList(0, ROWS_PER_TRANSACTION);
+
+                    final Throwable failure = failure(() -> TestDatabase.inTransaction(entityManagerFactory, em -> {
+                        final List<CascadeRefreshEntity> entities = new ArrayList<>();
+                        for (final Long id : targets) {
+                            entities.add(em.find(CascadeRefreshEntity.class, id));
+                        }
+                        OrderedLockRefresh.refreshAll(em, entities, LockModeType.PESSIMISTIC_WRITE);
+                        for (final CascadeRefreshEntity entity : entities) {
+                            Assertions.assertEquals(LockModeType.PESSIMISTIC_WRITE, em.getLockMode(entity));
+                            entity.second.name = "updated by " + Thread.currentThread().getName();
+                        }
+                    }));
+                    if (failure == null) {
+                        committed.incrementAndGet();
+                    } else {
+                        failures.add(failure);
+                    }
+                }
+                return failures;
+            }));
+        }
+
+        final List<Throwable> failures = new ArrayList<>();
+        for (final Future<List<Throwable>> worker : workers) {
+            failures.addAll(worker.get(2, TimeUnit.MINUTES));
+        }
+        Assertions.assertEquals(0, failures.stream().filter(LockOrderingTest::isDeadlock).count(), () -> failures.toString());
+        Assertions.assertEquals(List.of(), failures);
+        Assertions.assertEquals(WORKERS * TRANSACTIONS_PER_WORKER, committed.get());
+    }
+
+    private static Throwable failure(final Runnable runnable) {
+        try {
+            runnable.run();
+            return null;
+        } catch (final RuntimeException e) {
+            return e;
+        }
+    }
+
+    private static boolean isDeadlock(final Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException && DEADLOCK.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void await(final CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.hibernate.bugs;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.refresh.LockRetry;
+import org.hibernate.bugs.refresh.RefreshStrategy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+
+/**
+ * Checks which failures {@link LockRetry} retries, how many attempts it makes and what it counts.
+ */
+class LockRetryTest {
+
+    private static final String NAME = "first entity";
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private EntityManagerFactory entityManagerFactory;
+    private LockRetry retry;
+    private Long id;
+
+    @BeforeEach
+    void init() {
+        entityManagerFactory = TestDatabase.sharedEntityManagerFactory();
+        retry = new LockRetry(entityManagerFactory);
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final CascadeRefreshEntity entity = TestDatabase.persistWithNested(em, NAME, "second entity");
+            id = entity.id;
+        });
+    }
+
+    @AfterEach
+    void destroy() {
+        executor.shutdownNow();
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+        }
+    }
+
+    @Test
+    void retriesUntilTheLockIsReleased() throws Exception {
+        final CountDownLatch locked = new CountDownLatch(1);
+        final Future<?> holder = executor.submit(() -> TestDatabase.inTransaction(entityManagerFactory, em -> {
+            em.refresh(CascadeRefreshEntity.findByName(em, NAME), LockModeType.PESSIMISTIC_WRITE);
+            locked.countDown();
+            TestDatabase.sleep(100);
+        }));
+        Assertions.assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        retry.withMaxAttempts(50).withBackoff(5, 20).inTransaction(em -> {
+            final CascadeRefreshEntity entity = CascadeRefreshEntity.findByName(em, NAME);
+            RefreshStrategy.REFRESH.refresh(em, entity);
+            entity.name = "updated";
+        });
+        holder.get();
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertEquals("updated", em.createQuery("select e.name from CascadeRefreshEntity e", String.class).getSingleResult()));
+        Assertions.assertEquals(1, retry.stats().calls());
+        Assertions.assertTrue(retry.stats().retries() > 0, retry.stats()::toString);
+        Assertions.assertEquals(retry.stats().retries() + 1, retry.stats().attempts());
+        Assertions.assertEquals(0, retry.stats().giveUps());
+    }
+
+    @Test
+    void givesUpWhenTheBudgetIsSpent() {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            em.refresh(CascadeRefreshEntity.findByName(em, NAME), LockModeType.PESSIMISTIC_WRITE);
+
+            Assertions.assertThrows(
+                    PessimisticLockException.class,
+                    () -> retry.withMaxAttempts(3).withBackoff(1, 2).inTransaction(other -> RefreshStrategy.REFRESH.refresh(other, CascadeRefreshEntity.findByName(other, NAME)))
+            );
+        });
+
+        Assertions.assertEquals(3, retry.stats().attempts());
+        Assertions.assertEquals(3, retry.stats().lockFailures());
+        Assertions.assertEquals(2, retry.stats().retries());
+        Assertions.assertEquals(1, retry.stats().giveUps());
+    }
+
+    @Test
+    void retriesOptimisticFailures() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        final String name = retry.fromTransaction(em -> {
+            final CascadeRefreshEntity entity = em.find(CascadeRefreshEntity.class, id);
+            if (attempts.incrementAndGet() == 1) {
+                // a concurrent update bumps the version after this attempt read the row
+                TestDatabase.inTransaction(entityManagerFactory, other -> other.find(CascadeRefreshEntity.class, id).name = "concurrent update");
+            }
+            entity.name = entity.name + " (attempt " + attempts.get() + ")";
+            return entity.name;
+        });
+
+        Assertions.assertEquals("concurrent update (attempt 2)", name);
+        Assertions.assertEquals(2, retry.stats().attempts());
+        Assertions.assertEquals(1, retry.stats().retries());
+    }
+
+    @Test
+    void doesNotRetryOtherFailures() {
+        Assertions.assertThrows(IllegalStateException.class, () -> retry.inTransaction(em -> {
+            CascadeRefreshEntity.findByName(em, NAME).name = "rolled back";
+            throw new IllegalStateException("not a lock failure");
+        }));
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertNotNull(CascadeRefreshEntity.findByName(em, NAME)));
+        Assertions.assertEquals(1, retry.stats().attempts());
+        Assertions.assertEquals(0, retry.stats().lockFailures());
+        Assertions.assertTrue(LockRetry.isLockFailure(new RuntimeException(new OptimisticLockException())));
+        Assertions.assertTrue(LockRetry.isLockFailure(new org.hibernate.PessimisticLockException("lock wait", null, null)));
+        Assertions.assertFalse(LockRetry.isLockFailure(new IllegalStateException("not a lock failure")));
+    }
+}
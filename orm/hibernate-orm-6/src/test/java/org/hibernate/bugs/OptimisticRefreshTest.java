@@ -0,0 +1,112 @@
+package org.hibernate.bugs;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.metrics.LockFootprint;
+import org.hibernate.bugs.refresh.LockRetry;
+import org.hibernate.bugs.refresh.OptimisticRefresh;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Checks that {@link OptimisticRefresh} locks no row, and that its commit fails only when another transaction changed
+ * the root.
+ */
+class OptimisticRefreshTest {
+
+    private EntityManagerFactory entityManagerFactory;
+    private Long id;
+    private Long nestedId;
+    private Long otherNestedId;
+
+    @BeforeEach
+    void init() {
+        entityManagerFactory = TestDatabase.sharedEntityManagerFactory();
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final NestedEntity other = new NestedEntity();
+            other.name = "other entity";
+            em.persist(other);
+
+            final CascadeRefreshEntity entity = TestDatabase.persistWithNested(em, "first entity", "second entity");
+            id = entity.id;
+            nestedId = entity.second.id;
+            otherNestedId = other.id;
+        });
+    }
+
+    @AfterEach
+    void destroy() {
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = LockModeType.class, names = {"OPTIMISTIC", "OPTIMISTIC_FORCE_INCREMENT"})
+    void locksNoRow(final LockModeType lockMode) {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final CascadeRefreshEntity entity = em.find(CascadeRefreshEntity.class, id);
+            OptimisticRefresh.refresh(em, entity, lockMode);
+
+            Assertions.assertEquals(lockMode, em.getLockMode(entity));
+            Assertions.assertEquals(LockModeType.NONE, em.getLockMode(entity.second));
+            final LockFootprint footprint = LockFootprint.of(em);
+            Assertions.assertEquals(0, footprint.rowCount(), footprint::toString);
+        });
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = LockModeType.class, names = {"OPTIMISTIC", "OPTIMISTIC_FORCE_INCREMENT"})
+    void nestedUpdateDoesNotConflict(final LockModeType lockMode) {
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final CascadeRefreshEntity entity = em.find(CascadeRefreshEntity.class, id);
+            OptimisticRefresh.refresh(em, entity, lockMode);
+
+            TestDatabase.inTransaction(entityManagerFactory, other -> other.find(NestedEntity.class, nestedId).name = "second entity (UPDATED)");
+        });
+
+        Assertions.assertEquals(lockMode == LockModeType.OPTIMISTIC_FORCE_INCREMENT ? 1L : 0L, version());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = LockModeType.class, names = {"OPTIMISTIC", "OPTIMISTIC_FORCE_INCREMENT"})
+    void rootUpdateFailsTheCommit(final LockModeType lockMode) {
+        final RuntimeException failure = Assertions.assertThrows(RuntimeException.class, () -> TestDatabase.inTransaction(entityManagerFactory, em -> {
+            final CascadeRefreshEntity entity = em.find(CascadeRefreshEntity.class, id);
+            OptimisticRefresh.refresh(em, entity, lockMode);
+
+            TestDatabase.inTransaction(entityManagerFactory, other -> other.find(CascadeRefreshEntity.class, id).second = other.getReference(NestedEntity.class, otherNestedId));
+        }));
+
+        Assertions.assertTrue(LockRetry.isLockFailure(failure), failure::toString);
+        Assertions.assertEquals(1L, version());
+    }
+
+    @Test
+    void rejectsPessimisticModes() {
+        TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> OptimisticRefresh.refresh(em, em.find(CascadeRefreshEntity.class, id), LockModeType.PESSIMISTIC_WRITE)
+        ));
+    }
+
+    private long version() {
+        final EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            return ((Number) em.createNativeQuery("select version from CascadeRefreshEntity where id = :id")
+                    .setParameter("id", id)
+                    .getSingleResult()).longValue();
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.hibernate.bugs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.metrics.PoolMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceException;
+
+/**
+ * Transactions that keep their connection while holding row locks starve the pool: with every connection borrowed by
+ * a lock holder, the next transaction waits for a connection and times out.
+ */
+class PoolStarvationTest {
+
+    private static final int POOL_SIZE = 2;
+    private static final long CONNECTION_TIMEOUT_MILLIS = 250;
+    private static final long LOCK_HOLD_MILLIS = 4 * CONNECTION_TIMEOUT_MILLIS;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private EntityManagerFactory entityManagerFactory;
+    private PoolMetrics poolMetrics;
+
+    @BeforeEach
+    void init() {
+        // update rather than create-drop, so closing this factory keeps the schema of the shared one
+        entityManagerFactory = TestDatabase.createEntityManagerFactory(
+                Map.of(
+                        "hibernate.hbm2ddl.auto", "update",
+                        "hibernate.hikari.maximumPoolSize", String.valueOf(POOL_SIZE),
+                        "hibernate.hikari.connectionTimeout", String.valueOf(CONNECTION_TIMEOUT_MILLIS)
+                )
+        );
+        poolMetrics = PoolMetrics.install(entityManagerFactory);
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            for (int i = 0; i < POOL_SIZE; i++) {
+                TestDatabase.persistWithNested(em, "entity " + i, "nested " + i);
+            }
+        });
+        poolMetrics.reset();
+    }
+
+    @AfterEach
+    void destroy() {
+        executor.shutdownNow();
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+            entityManagerFactory.close();
+        }
+    }
+
+    @Test
+    void lockHoldersStarveThePool() throws Exception {
+
+        final CountDownLatch locked = new CountDownLatch(POOL_SIZE);
+        final List<Future<?>> holders = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            final String name = "entity " + i;
+            holders.add(executor.submit(() -> TestDatabase.inTransaction(entityManagerFactory, em -> {
+                em.refresh(CascadeRefreshEntity.findByName(em, name), LockModeType.PESSIMISTIC_WRITE);
+                locked.countDown();
+                TestDatabase.sleep(LOCK_HOLD_MILLIS);
+            })));
+        }
+        Assertions.assertTrue(locked.await(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(POOL_SIZE, poolMetrics.activeConnections());
+
+        final long start = System.nanoTime();
+        Assertions.assertThrows(PersistenceException.class, () -> TestDatabase.inTransaction(entityManagerFactory, em -> CascadeRefreshEntity.findByName(em, "entity 0")));
+        final long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        for (final Future<?> holder : holders) {
+            holder.get();
+        }
+
+        Assertions.assertTrue(waited >= CONNECTION_TIMEOUT_MILLIS, "waited " + waited + " ms");
+        Assertions.assertEquals(1, poolMetrics.timeouts(), poolMetrics::toString);
+        Assertions.assertTrue(poolMetrics.usage().getMaxValue() >= LOCK_HOLD_MILLIS, poolMetrics::toString);
+    }
+}
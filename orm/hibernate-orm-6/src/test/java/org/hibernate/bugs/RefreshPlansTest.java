@@ -0,0 +1,69 @@
+package org.hibernate.bugs;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.refresh.RefreshPlans;
+import org.hibernate.engine.spi.LoadQueryInfluencers;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Checks that {@link RefreshPlans} applies graphs and profiles only for the duration of the callback.
+ */
+class RefreshPlansTest {
+
+    private EntityManager em;
+    private SessionImplementor session;
+
+    @BeforeEach
+    void init() {
+        em = TestDatabase.sharedEntityManagerFactory().createEntityManager();
+        session = em.unwrap(SessionImplementor.class);
+    }
+
+    @AfterEach
+    void destroy() {
+        em.close();
+    }
+
+    @Test
+    void restoresGraph() {
+        final RefreshPlans plans = RefreshPlans.of(session);
+        final LoadQueryInfluencers influencers = session.getLoadQueryInfluencers();
+
+        plans.withGraph(session, CascadeRefreshEntity.class, () -> Assertions.assertNotNull(influencers.getEffectiveEntityGraph().getGraph()));
+        Assertions.assertNull(influencers.getEffectiveEntityGraph().getGraph());
+
+        Assertions.assertThrows(IllegalStateException.class, () -> plans.withGraph(session, CascadeRefreshEntity.class, () -> {
+            throw new IllegalStateException();
+        }));
+        Assertions.assertNull(influencers.getEffectiveEntityGraph().getGraph());
+
+        // one registry per factory
+        Assertions.assertSame(RefreshPlans.of(session), plans);
+    }
+
+    @Test
+    void restoresProfile() {
+        final RefreshPlans plans = RefreshPlans.of(session);
+        final LoadQueryInfluencers influencers = session.getLoadQueryInfluencers();
+
+        plans.withProfile(session, RefreshPlans.ON_REFRESH_PROFILE, () -> Assertions.assertTrue(influencers.isFetchProfileEnabled(RefreshPlans.ON_REFRESH_PROFILE)));
+        Assertions.assertFalse(influencers.isFetchProfileEnabled(RefreshPlans.ON_REFRESH_PROFILE));
+
+        // a profile enabled by the caller stays enabled
+        influencers.enableFetchProfile(RefreshPlans.ON_REFRESH_PROFILE);
+        plans.withProfile(session, RefreshPlans.ON_REFRESH_PROFILE, () -> {
+        });
+        Assertions.assertTrue(influencers.isFetchProfileEnabled(RefreshPlans.ON_REFRESH_PROFILE));
+
+        // an unknown profile runs the callback unchanged instead of throwing
+        final boolean[] ran = {false};
+        plans.withProfile(session, "unknown", () -> ran[0] = true);
+        Assertions.assertTrue(ran[0]);
+    }
+}
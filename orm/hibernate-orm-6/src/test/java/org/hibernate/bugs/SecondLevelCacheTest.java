@@ -0,0 +1,170 @@
+package org.hibernate.bugs;
+
+import static org.hibernate.bugs.sql.SqlShape.select;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.sql.SqlAssertions;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Checks that {@code NestedEntity} is served from the second-level cache by non-locking lookups, and that pessimistic
+ * refreshes read the database and replace the cached state.
+ */
+class SecondLevelCacheTest {
+
+    private static final int ROWS = 20;
+
+    private static EntityManagerFactory entityManagerFactory;
+    private static Statistics statistics;
+    private Long nestedId;
+
+    @BeforeAll
+    static void createFactory() {
+        // a factory of its own, so that the statistics stay off for the other tests;
+        // update rather than create-drop, so closing this factory keeps the schema of the shared one
+        entityManagerFactory = TestDatabase.createEntityManagerFactory(
+                Map.of(
+                        "hibernate.hbm2ddl.auto", "update",
+                        "hibernate.generate_statistics", "true"
+                )
+        );
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterAll
+    static void closeFactory() {
+        if (entityManagerFactory != null) {
+            entityManagerFactory.close();
+        }
+    }
+
+    @BeforeEach
+    void init() {
+
+        final NestedEntity nested = new NestedEntity();
+        nested.name = "nested";
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            for (int i = 0; i < ROWS; i++) {
+                final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+                entity.name = "entity " + i;
+                entity.second = nested;
+                em.persist(entity);
+            }
+        });
+        nestedId = nested.id;
+        statistics.clear();
+    }
+
+    @AfterEach
+    void destroy() {
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+        }
+    }
+
+    @Test
+    void lookupsResolveSecondFromTheCache() {
+        // each lookup runs in its own session, so without the cache every one selects NestedEntity again
+        for (int i = 0; i < ROWS; i++) {
+            final String name = "entity " + i;
+            SqlAssertions.assertStatements(
+                    List.of(select("CascadeRefreshEntity")),
+                    () -> TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertEquals("nested", CascadeRefreshEntity.findByName(em, name).second.name))
+            );
+        }
+
+        final EntityStatistics nestedStatistics = statistics.getEntityStatistics(NestedEntity.class.getName());
+        Assertions.assertEquals(ROWS, nestedStatistics.getCacheHitCount());
+        Assertions.assertEquals(0, nestedStatistics.getCacheMissCount());
+        Assertions.assertEquals(0, nestedStatistics.getLoadCount());
+    }
+
+    @Test
+    void bypassingTheCacheSelectsEveryTime() {
+        for (int i = 0; i < ROWS; i++) {
+            final String name = "entity " + i;
+            SqlAssertions.assertStatements(
+                    List.of(select("CascadeRefreshEntity"), select("NestedEntity")),
+                    () -> TestDatabase.inTransaction(entityManagerFactory, em -> {
+                        em.setProperty("jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS);
+                        CascadeRefreshEntity.findByName(em, name);
+                    })
+            );
+        }
+
+        Assertions.assertEquals(0, statistics.getEntityStatistics(NestedEntity.class.getName()).getCacheHitCount());
+        Assertions.assertEquals(ROWS, statistics.getEntityStatistics(NestedEntity.class.getName()).getLoadCount());
+    }
+
+    @Test
+    void pessimisticRefreshReadsTheDatabaseAndInvalidatesTheCache() {
+        renameBehindTheCache("renamed");
+
+        // a non-locking find still returns the cached state
+        TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertEquals("nested", em.find(NestedEntity.class, nestedId).name));
+
+        // the find is a cache hit, only the refresh reaches the database
+        SqlAssertions.assertStatements(
+                List.of(select("NestedEntity").forUpdate()),
+                () -> TestDatabase.inTransaction(entityManagerFactory, em -> {
+                    final NestedEntity nested = em.find(NestedEntity.class, nestedId);
+                    em.refresh(nested, LockModeType.PESSIMISTIC_WRITE);
+                    Assertions.assertEquals("renamed", nested.name);
+                })
+        );
+
+        // the refresh holds a soft lock on the entry until commit, so its own read is not cached: the next find loads the
+        // new version and puts it, and the finds after it hit the cache again
+        SqlAssertions.assertStatements(
+                List.of(select("NestedEntity")),
+                () -> TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertEquals("renamed", em.find(NestedEntity.class, nestedId).name))
+        );
+        SqlAssertions.assertStatements(
+                List.of(),
+                () -> TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertEquals("renamed", em.find(NestedEntity.class, nestedId).name))
+        );
+    }
+
+    @Test
+    void pessimisticFindReadsTheDatabase() {
+        renameBehindTheCache("renamed");
+
+        SqlAssertions.assertStatements(
+                List.of(select("NestedEntity").forUpdate()),
+                () -> TestDatabase.inTransaction(entityManagerFactory, em -> Assertions.assertEquals("renamed", em.find(NestedEntity.class, nestedId, LockModeType.PESSIMISTIC_WRITE).name))
+        );
+    }
+
+    /**
+     * Updates the row over plain JDBC, which Hibernate does not see, so the cache keeps the old state. The version is
+     * bumped as any update through Hibernate would: read-write only replaces a locked entry with a newer version.
+     */
+    private void renameBehindTheCache(final String name) {
+        TestDatabase.inTransaction(entityManagerFactory, em -> em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement update = connection.prepareStatement("update NestedEntity set name = ?, version = version + 1 where id = ?")) {
+                update.setString(1, name);
+                update.setLong(2, nestedId);
+                Assertions.assertEquals(1, update.executeUpdate());
+            }
+        }));
+        Assertions.assertTrue(entityManagerFactory.getCache().contains(NestedEntity.class, nestedId));
+    }
+}
@@ -0,0 +1,171 @@
+package org.hibernate.bugs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.refresh.SkipLockedClaim;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Claims rows with {@code for update skip locked}, both for a fixed set of names and as a work queue drained by
+ * several workers. How throughput grows with the workers is measured by {@code SkipLockedBenchmark}.
+ */
+class SkipLockedClaimTest {
+
+    private static final int JOBS = 200;
+    private static final int CLAIM_SIZE = 10;
+    private static final long WORK_MILLIS = 2;
+    private static final int WORKERS = 4;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void init() {
+        Assumptions.assumeFalse(TestDatabase.isH2(), "H2 renders skip locked as a plain for update");
+        entityManagerFactory = TestDatabase.sharedEntityManagerFactory();
+    }
+
+    @AfterEach
+    void destroy() {
+        executor.shutdownNow();
+        if (entityManagerFactory != null) {
+            TestDatabase.truncate(entityManagerFactory);
+        }
+    }
+
+    @Test
+    void claimSkipsLockedRows() {
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            for (final String name : List.of("a", "b", "c")) {
+                TestDatabase.persistWithNested(em, name, name + " (nested)");
+            }
+        });
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+
+            final SkipLockedClaim.Claim<CascadeRefreshEntity> first = SkipLockedClaim.claim(em, CascadeRefreshEntity.class, List.of("a"));
+            Assertions.assertEquals(Set.of("a"), first.claimed.keySet());
+
+            TestDatabase.executeAsync(() -> {
+                TestDatabase.inTransaction(entityManagerFactory, nestedEm -> {
+                    final SkipLockedClaim.Claim<CascadeRefreshEntity> second = SkipLockedClaim.claim(nestedEm, CascadeRefreshEntity.class, List.of("a", "b", "c", "x"));
+                    Assertions.assertEquals(Set.of("b", "c"), second.claimed.keySet());
+                    Assertions.assertEquals(Set.of("a"), second.skipped);
+                    Assertions.assertEquals(Set.of("x"), second.missing);
+                    // only root rows are claimed, the nested row of a locked root stays writable
+                    CascadeRefreshEntity.findByName(nestedEm, "b").second.name = "b (nested) (UPDATED)";
+                });
+            });
+
+            first.claimed.get("a").second.name = "a (nested) (UPDATED)";
+        });
+    }
+
+    @Test
+    void workersClaimEveryFreeRowOnceWithoutBlocking() throws Exception {
+
+        TestDatabase.inTransaction(entityManagerFactory, em -> {
+            for (int i = 0; i < JOBS; i++) {
+                TestDatabase.persistWithNested(em, "job-" + i, "job-" + i + " (nested)");
+            }
+        });
+
+        // another transaction holds the first row for as long as the workers drain the queue
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<Long> holder = executor.submit(() -> {
+            final Long[] heldId = new Long[1];
+            TestDatabase.inTransaction(entityManagerFactory, em -> {
+                heldId[0] = SkipLockedClaim.claim(em, CascadeRefreshEntity.class, List.of("job-0")).claimed.get("job-0").id;
+                held.countDown();
+                await(release);
+            });
+            return heldId[0];
+        });
+        await(held);
+
+        final Map<Long, Integer> claims;
+        try {
+            // a worker that waited for the held row would fail at once on innodb-lock-wait-timeout=0
+            claims = drain(WORKERS, "job-", "done-");
+        } finally {
+            release.countDown();
+        }
+        final Long heldId = holder.get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(JOBS - 1, claims.size());
+        Assertions.assertFalse(claims.containsKey(heldId));
+        Assertions.assertEquals(List.of(), claims.entrySet().stream().filter(claim -> claim.getValue() > 1).collect(Collectors.toList()));
+
+        // released, the held row is the only one left
+        Assertions.assertEquals(Map.of(heldId, 1), drain(1, "job-", "done-"));
+    }
+
+    /**
+     * Claims rows named {@code from*} until none are left, renaming each to {@code to*}, and returns how many times
+     * each row was claimed. Fails if any worker fails.
+     */
+    private Map<Long, Integer> drain(final int workers, final String from, final String to) throws InterruptedException, ExecutionException {
+        final ExecutorService pool = Executors.newFixedThreadPool(workers);
+        final Map<Long, Integer> claims = new ConcurrentHashMap<>();
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                futures.add(pool.submit(() -> {
+                    boolean more = true;
+                    while (more) {
+                        final boolean[] claimedAny = {false};
+                        TestDatabase.inTransaction(entityManagerFactory, em -> {
+                            for (final CascadeRefreshEntity entity : SkipLockedClaim.claimNext(em, CascadeRefreshEntity.class, from, CLAIM_SIZE)) {
+                                claimedAny[0] = true;
+                                claims.merge(entity.id, 1, Integer::sum);
+                                entity.name = to + entity.name.substring(from.length());
+                                TestDatabase.sleep(WORK_MILLIS);
+                            }
+                        });
+                        more = claimedAny[0];
+                    }
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+            return claims;
+        } catch (final TimeoutException e) {
+            throw new IllegalStateException("Workers did not drain the queue", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out waiting for the other transaction");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
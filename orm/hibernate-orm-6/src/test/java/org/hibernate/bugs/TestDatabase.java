@@ -0,0 +1,226 @@
+package org.hibernate.bugs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.testcontainers.containers.Container;
+import org.testcontainers.containers.MySQLContainer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.Persistence;
+
+/**
+ * Database the tests run against: MySQL 8 in a container by default, or H2 in MySQL mode with
+ * {@code -Dtest.database=h2} (the {@code h2} Maven profile), which needs no Docker.
+ * <p>
+ * Lock behaviors of the H2 stand-in compared with InnoDB:
+ * <ul>
+ * <li>{@code LOCK_TIMEOUT=1} fails a conflicting lock after a millisecond, close to
+ * {@code --innodb-lock-wait-timeout=0} ({@code LOCK_TIMEOUT=0} would fall back to H2's default wait of two seconds), and
+ * Hibernate reports it as a {@code PessimisticLockException} on both databases.</li>
+ * <li>{@code for update} on a join locks the rows of the first table only, so the locking {@code refresh} of an entity
+ * with an eager join does not lock {@code NestedEntity} on H2: the over-locking this project reproduces is InnoDB
+ * behavior.</li>
+ * <li>Hibernate's H2 dialect renders {@code skip locked} as a plain {@code for update}, so skip-locked claims fail
+ * on a locked row instead of skipping it.</li>
+ * <li>H2 has no gap or next-key locks: a locking read locks only the rows it returns, never the index range it
+ * scanned.</li>
+ * </ul>
+ * <p>
+ * It also holds the helpers the tests share: {@link #inTransaction}, {@link #executeAsync}, {@link #sleep} and the
+ * {@link #persistWithNested} fixture.
+ */
+final class TestDatabase {
+
+    static final String PROPERTY = "test.database";
+
+    private TestDatabase() {
+    }
+
+    static boolean isH2() {
+        return "h2".equalsIgnoreCase(System.getProperty(PROPERTY, "mysql"));
+    }
+
+    /**
+     * Connection settings of the persistence unit.
+     */
+    static Map<String, Object> properties() {
+        final Map<String, Object> properties = new HashMap<>();
+        if (isH2()) {
+            properties.put("jakarta.persistence.jdbc.url", "jdbc:h2:mem:db1;DB_CLOSE_DELAY=-1;MODE=MySQL;LOCK_TIMEOUT=1");
+            properties.put("jakarta.persistence.jdbc.user", "sa");
+            properties.put("jakarta.persistence.jdbc.password", "");
+        } else {
+            properties.put("jakarta.persistence.jdbc.url", MySQL.CONTAINER.getJdbcUrl());
+            properties.put("jakarta.persistence.jdbc.user", MySQL.CONTAINER.getUsername());
+            properties.put("jakarta.persistence.jdbc.password", MySQL.CONTAINER.getPassword());
+        }
+        return properties;
+    }
+
+    static EntityManagerFactory createEntityManagerFactory() {
+        return createEntityManagerFactory(Map.of());
+    }
+
+    static EntityManagerFactory createEntityManagerFactory(final Map<String, Object> overrides) {
+        final Map<String, Object> properties = properties();
+        properties.putAll(overrides);
+        return Persistence.createEntityManagerFactory("templatePU", properties);
+    }
+
+    /**
+     * One factory and schema for the whole test run, instead of bootstrapping Hibernate and running the DDL for every
+     * test. Tests sharing it call {@link #truncate} after each test.
+     */
+    static EntityManagerFactory sharedEntityManagerFactory() {
+        return Shared.ENTITY_MANAGER_FACTORY;
+    }
+
+    /**
+     * Deletes the rows of every mapped table, keeping the schema, and empties the second-level cache.
+     */
+    static void truncate(final EntityManagerFactory entityManagerFactory) {
+        entityManagerFactory.unwrap(SessionFactory.class).getSchemaManager().truncateMappedObjects();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    /**
+     * Runs the work in a new entity manager and transaction, committed unless the work marks it rollback-only, and
+     * rolled back if it throws.
+     */
+    static void inTransaction(final EntityManagerFactory entityManagerFactory, final Consumer<EntityManager> work) {
+        final EntityManager em = entityManagerFactory.createEntityManager();
+        final EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            work.accept(em);
+            if (transaction.getRollbackOnly()) {
+                transaction.rollback();
+            } else {
+                transaction.commit();
+            }
+        } catch (final RuntimeException | Error e) {
+            // a failed commit has already ended the transaction
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Runs the task on another thread, typically a transaction competing with the caller's, and waits for it. Its
+     * unchecked exceptions, failed assertions included, are thrown again here.
+     */
+    static void executeAsync(final Runnable runnable) {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(runnable).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Persists a {@code CascadeRefreshEntity} and, through the cascade, a new {@code NestedEntity} as its
+     * {@code second}.
+     *
+     * @return the root, whose id and nested id are set
+     */
+    static CascadeRefreshEntity persistWithNested(final EntityManager em, final String name, final String nestedName) {
+        final NestedEntity nested = new NestedEntity();
+        nested.name = nestedName;
+
+        final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+        entity.name = name;
+        entity.second = nested;
+        em.persist(entity);
+        return entity;
+    }
+
+    private static final class Shared {
+
+        private static final EntityManagerFactory ENTITY_MANAGER_FACTORY = create();
+
+        private static EntityManagerFactory create() {
+            final EntityManagerFactory entityManagerFactory = createEntityManagerFactory();
+            Runtime.getRuntime().addShutdownHook(new Thread(entityManagerFactory::close, "shared-entity-manager-factory-close"));
+            return entityManagerFactory;
+        }
+    }
+
+    /**
+     * Started on first use and shared by all test classes; Testcontainers removes it when the JVM exits.
+     */
+    private static final class MySQL {
+
+        private static final MySQLContainer<?> CONTAINER = start();
+
+        private static MySQLContainer<?> start() {
+            final MySQLContainer<?> container = new MySQLContainer<>("mysql:8.0")
+                    // lets the driver send an insert batch as one multi-row statement
+                    .withUrlParam("rewriteBatchedStatements", "true")
+                    .withCommand(
+                            "--innodb-lock-wait-timeout=0",
+                            "--character_set_server=utf8",
+                            "--collation_server=utf8_general_ci",
+                            "--explicit_defaults_for_timestamp=true",
+                            "--default_time_zone=+00:00",
+                            "--transaction_isolation=READ-COMMITTED"
+                    );
+            container.start();
+            grantDataLocks(container);
+            return container;
+        }
+
+        /**
+         * Lets the test user read the row locks of its transactions, for {@code LockFootprint}.
+         */
+        private static void grantDataLocks(final MySQLContainer<?> container) {
+            final String grant = "grant select on performance_schema.data_locks to '" + container.getUsername() + "'@'%'";
+            try {
+                final Container.ExecResult result = container.execInContainer("mysql", "-uroot", "-p" + container.getPassword(), "-e", grant);
+                if (result.getExitCode() != 0) {
+                    throw new IllegalStateException("Could not grant access to performance_schema.data_locks: " + result.getStderr());
+                }
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package org.hibernate.bugs.entity;
 
+import java.util.Collection;
+import java.util.Map;
+
 import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.FetchProfile;
 
@@ -8,24 +11,58 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQuery;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import jakarta.persistence.Version;
 
 @Entity
 @FetchProfile(name = "onRefresh", fetchOverrides = @FetchProfile.FetchOverride(entity = CascadeRefreshEntity.class, association = "second", fetch = FetchType.LAZY, mode = FetchMode.SELECT))
 @NamedQuery(name = "CascadeRefreshEntity.findByName", query = "select e from CascadeRefreshEntity e where e.name = :name")
+@Table(indexes = @Index(name = CascadeRefreshEntity.NAME_INDEX, columnList = "name"))
 public class CascadeRefreshEntity {
 
+    /**
+     * Ids fetched per sequence call, matching {@code hibernate.jdbc.batch_size}.
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    /**
+     * Backs {@link #findByName} and {@link #findByNames}: without it every lookup, and every locking lookup, scans the
+     * table.
+     */
+    public static final String NAME_INDEX = "CascadeRefreshEntity_name_idx";
+
     public static CascadeRefreshEntity findByName(final EntityManager em, final String name) {
         return em.createNamedQuery("CascadeRefreshEntity.findByName", CascadeRefreshEntity.class)
                 .setParameter("name", name)
                 .getSingleResult();
     }
 
+    /**
+     * Bulk {@link #findByName}: one query per {@value NameLookup#MAX_IN_LIST} names instead of one per name, with
+     * {@code second} join fetched so that it is loaded as {@code findByName} loads it.
+     */
+    public static Map<String, CascadeRefreshEntity> findByNames(final EntityManager em, final Collection<String> names) {
+        return findByNames(em, names, LockModeType.NONE, true);
+    }
+
+    public static Map<String, CascadeRefreshEntity> findByNames(final EntityManager em, final Collection<String> names, final LockModeType lockMode, final boolean fetchSecond) {
+        return NameLookup.findByNames(em, CascadeRefreshEntity.class, e -> e.name, names, lockMode, fetchSecond);
+    }
+
+    /**
+     * Pooled sequence: one sequence call per {@value #ID_ALLOCATION_SIZE} ids instead of one per row, so inserts can be
+     * batched; MySQL has no sequences and gets a table with the same name.
+     */
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "CascadeRefreshEntity_SEQ")
+    @SequenceGenerator(name = "CascadeRefreshEntity_SEQ", sequenceName = "CascadeRefreshEntity_SEQ", allocationSize = ID_ALLOCATION_SIZE)
     public Long id;
 
     @Version
@@ -0,0 +1,92 @@
+package org.hibernate.bugs.entity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.hibernate.bugs.refresh.RefreshPlans;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.SpecHints;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.NonUniqueResultException;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * Looks up entities by name with {@code in} lists instead of one {@code findByName} query per name.
+ * <p>
+ * Names are split into chunks of at most {@link #MAX_IN_LIST} and each chunk is padded, by repeating its last name, to
+ * the next power of two. A lookup of any size then binds one of a handful of parameter counts, so the statements
+ * Hibernate and the JDBC driver cache for them are reused instead of one being built per distinct count.
+ */
+final class NameLookup {
+
+    static final int MAX_IN_LIST = 512;
+
+    private NameLookup() {
+    }
+
+    /**
+     * Entities by name, in the order of the given names; names without a row are left out.
+     *
+     * @param lockMode lock taken on the returned rows, {@code null} or {@code NONE} for none; with {@code fetchSecond} a
+     * {@code for update} also covers the joined {@code NestedEntity} rows on InnoDB
+     * @param fetchSecond whether to join fetch the {@code second} association; otherwise it is left an unfetched
+     * reference, where the eager mapping would load it with one more select per row
+     * @throws NonUniqueResultException if a name matches more than one row, as {@code findByName} would
+     */
+    static <T> Map<String, T> findByNames(final EntityManager em, final Class<T> entityClass, final Function<T, String> nameOf,
+                                          final Collection<String> names, final LockModeType lockMode, final boolean fetchSecond) {
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        final List<String> distinct = new ArrayList<>(new LinkedHashSet<>(names));
+        final String hql = "select e from " + entityClass.getSimpleName() + " e"
+                + (fetchSecond ? " left join fetch e.second" : "")
+                + " where e.name in :names";
+
+        final Map<String, T> found = new HashMap<>();
+        for (int from = 0; from < distinct.size(); from += MAX_IN_LIST) {
+            final TypedQuery<T> query = em.createQuery(hql, entityClass)
+                    .setParameter("names", padded(distinct.subList(from, Math.min(from + MAX_IN_LIST, distinct.size()))));
+            if (!fetchSecond) {
+                query.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, RefreshPlans.of(session).graph(session, entityClass));
+            }
+            if (lockMode != null && lockMode != LockModeType.NONE) {
+                query.setLockMode(lockMode);
+            }
+            for (final T entity : query.getResultList()) {
+                if (found.put(nameOf.apply(entity), entity) != null) {
+                    throw new NonUniqueResultException("More than one row with the given name: " + nameOf.apply(entity));
+                }
+            }
+        }
+
+        final Map<String, T> byName = new LinkedHashMap<>();
+        for (final String name : distinct) {
+            final T entity = found.get(name);
+            if (entity != null) {
+                byName.put(name, entity);
+            }
+        }
+        return byName;
+    }
+
+    static List<String> padded(final List<String> names) {
+        final int bucket = names.size() <= 1 ? names.size() : Integer.highestOneBit(names.size() - 1) << 1;
+        if (names.size() == bucket) {
+            return names;
+        }
+        final List<String> padded = new ArrayList<>(bucket);
+        padded.addAll(names);
+        final String last = names.get(names.size() - 1);
+        while (padded.size() < bucket) {
+            padded.add(last);
+        }
+        return padded;
+    }
+}
@@ -1,15 +1,30 @@
 package org.hibernate.bugs.entity;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Version;
 
+/**
+ * Read-mostly, so kept in the second-level cache: the eager {@code second} of a non-locking lookup is resolved from the
+ * cache instead of a select per row. Pessimistic loads and refreshes bypass the cache; a refresh soft-locks the entry
+ * until its transaction ends, and the next read puts the version it loads. Read-write keeps concurrent updates from
+ * leaving a stale entry behind.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class NestedEntity {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "NestedEntity_SEQ")
+    @SequenceGenerator(name = "NestedEntity_SEQ", sequenceName = "NestedEntity_SEQ", allocationSize = CascadeRefreshEntity.ID_ALLOCATION_SIZE)
     public Long id;
 
     @Version
@@ -1,5 +1,8 @@
 package org.hibernate.bugs.entity;
 
+import java.util.Collection;
+import java.util.Map;
+
 import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.FetchProfile;
 
@@ -8,24 +11,49 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQuery;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 import jakarta.persistence.Version;
 
 @Entity
 @FetchProfile(name = "onRefresh", fetchOverrides = @FetchProfile.FetchOverride(entity = NoCascadeRefreshEntity.class, association = "second", fetch = FetchType.LAZY, mode = FetchMode.SELECT))
 @NamedQuery(name = "NoCascadeRefreshEntity.findByName", query = "select e from NoCascadeRefreshEntity e where e.name = :name")
+@Table(indexes = @Index(name = NoCascadeRefreshEntity.NAME_INDEX, columnList = "name"))
 public class NoCascadeRefreshEntity {
 
+    /**
+     * Backs {@link #findByName} and {@link #findByNames}: without it every lookup, and every locking lookup, scans the
+     * table.
+     */
+    public static final String NAME_INDEX = "NoCascadeRefreshEntity_name_idx";
+
     public static NoCascadeRefreshEntity findByName(final EntityManager em, final String name) {
         return em.createNamedQuery("NoCascadeRefreshEntity.findByName", NoCascadeRefreshEntity.class)
                 .setParameter("name", name)
                 .getSingleResult();
     }
 
+    /**
+     * Bulk {@link #findByName}: one query per {@value NameLookup#MAX_IN_LIST} names instead of one per name, with
+     * {@code second} join fetched so that it is loaded as {@code findByName} loads it.
+     */
+    public static Map<String, NoCascadeRefreshEntity> findByNames(final EntityManager em, final Collection<String> names) {
+        return findByNames(em, names, LockModeType.NONE, true);
+    }
+
+    public static Map<String, NoCascadeRefreshEntity> findByNames(final EntityManager em, final Collection<String> names, final LockModeType lockMode, final boolean fetchSecond) {
+        return NameLookup.findByNames(em, NoCascadeRefreshEntity.class, e -> e.name, names, lockMode, fetchSecond);
+    }
+
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "NoCascadeRefreshEntity_SEQ")
+    @SequenceGenerator(name = "NoCascadeRefreshEntity_SEQ", sequenceName = "NoCascadeRefreshEntity_SEQ", allocationSize = CascadeRefreshEntity.ID_ALLOCATION_SIZE)
     public Long id;
 
     @Version
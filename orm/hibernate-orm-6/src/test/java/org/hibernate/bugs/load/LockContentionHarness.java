@@ -0,0 +1,357 @@
+package org.hibernate.bugs.load;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.HdrHistogram.Histogram;
+import org.hibernate.bugs.entity.CascadeRefreshEntity;
+import org.hibernate.bugs.entity.NestedEntity;
+import org.hibernate.bugs.refresh.AsyncRefresher;
+import org.hibernate.bugs.refresh.LockRetry;
+import org.hibernate.bugs.refresh.RefreshStrategy;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+
+/**
+ * Runs many concurrent workers doing a mix of {@code findByName} reads, {@code NestedEntity.name} updates and
+ * refreshes with a {@link RefreshStrategy}, and reports throughput, lock failures and latency percentiles per
+ * operation.
+ * <p>
+ * Workers run on virtual threads when the runtime has them and on a pool of one thread each otherwise. By default they
+ * all compete for the persistence unit's connection pool, so the time spent waiting for a connection counts towards
+ * the operation latency; {@link #withConcurrentTransactions} puts a fair semaphore in front of the pool instead.
+ */
+public final class LockContentionHarness {
+
+    public enum Operation {
+        READ, UPDATE_NESTED, REFRESH
+    }
+
+    private final EntityManagerFactory entityManagerFactory;
+    private int workers = 200;
+    private int operationsPerWorker = 50;
+    private int rows = 20;
+    private int nestedRows = 5;
+    private double readRatio = 0.5;
+    private double updateRatio = 0.25;
+    private int concurrentTransactions = Integer.MAX_VALUE;
+    private long lockHoldMillis = 1;
+    private long seed = 42;
+    private LockRetry retry;
+    private boolean updateRoot;
+    private final List<Long> nestedIds = new ArrayList<>();
+
+    public LockContentionHarness(final EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public LockContentionHarness withWorkers(final int workers) {
+        this.workers = workers;
+        return this;
+    }
+
+    public LockContentionHarness withOperationsPerWorker(final int operationsPerWorker) {
+        this.operationsPerWorker = operationsPerWorker;
+        return this;
+    }
+
+    /**
+     * {@code rows} {@code CascadeRefreshEntity} rows spread over {@code nestedRows} shared {@code NestedEntity} rows.
+     */
+    public LockContentionHarness withRows(final int rows, final int nestedRows) {
+        this.rows = rows;
+        this.nestedRows = nestedRows;
+        return this;
+    }
+
+    /**
+     * Share of reads and of nested updates; the rest of the operations are refreshes.
+     */
+    public LockContentionHarness withMix(final double readRatio, final double updateRatio) {
+        if (readRatio < 0 || updateRatio < 0 || readRatio + updateRatio > 1) {
+            throw new IllegalArgumentException("Invalid operation mix: read " + readRatio + ", update " + updateRatio);
+        }
+        this.readRatio = readRatio;
+        this.updateRatio = updateRatio;
+        return this;
+    }
+
+    /**
+     * Upper bound of open transactions, to take the connection pool out of the measurement; unbounded by default.
+     */
+    public LockContentionHarness withConcurrentTransactions(final int concurrentTransactions) {
+        this.concurrentTransactions = concurrentTransactions;
+        return this;
+    }
+
+    /**
+     * How long a refresh keeps its locks before committing.
+     */
+    public LockContentionHarness withLockHoldMillis(final long lockHoldMillis) {
+        this.lockHoldMillis = lockHoldMillis;
+        return this;
+    }
+
+    public LockContentionHarness withSeed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Runs each operation through the retry policy, so that only operations that spent its whole budget count as lock
+     * failures, and their latency includes the backoff.
+     */
+    public LockContentionHarness withRetry(final LockRetry retry) {
+        this.retry = retry;
+        return this;
+    }
+
+    /**
+     * Makes each refresh a refresh-and-update: after holding its locks, it points the root at the next
+     * {@code NestedEntity} row, so that its commit writes the root row and increments its version. Needs at least two
+     * nested rows.
+     */
+    public LockContentionHarness withRootUpdate(final boolean updateRoot) {
+        this.updateRoot = updateRoot;
+        return this;
+    }
+
+    /**
+     * Inserts the rows the workers operate on.
+     */
+    public void seed() {
+        nestedIds.clear();
+        inTransaction(em -> {
+            final List<NestedEntity> nested = new ArrayList<>(nestedRows);
+            for (int i = 0; i < nestedRows; i++) {
+                final NestedEntity entity = new NestedEntity();
+                entity.name = "nested-" + i;
+                em.persist(entity);
+                nested.add(entity);
+                nestedIds.add(entity.id);
+            }
+            for (int i = 0; i < rows; i++) {
+                final CascadeRefreshEntity entity = new CascadeRefreshEntity();
+                entity.name = rowName(i);
+                entity.second = nested.get(i % nestedRows);
+                em.persist(entity);
+            }
+        });
+    }
+
+    public Report run(final RefreshStrategy strategy) throws InterruptedException {
+        final Semaphore transactions = new Semaphore(concurrentTransactions, true);
+        final SplittableRandom seeds = new SplittableRandom(seed);
+        final List<Future<Map<Operation, Samples>>> futures = new ArrayList<>(workers);
+
+        final long start = System.nanoTime();
+        final ExecutorService executor = AsyncRefresher.newExecutor(workers);
+        try {
+            for (int w = 0; w < workers; w++) {
+                final SplittableRandom random = seeds.split();
+                futures.add(executor.submit(() -> work(strategy, random, transactions)));
+            }
+            final Map<Operation, Samples> merged = newSamples();
+            for (final Future<Map<Operation, Samples>> future : futures) {
+                for (final Map.Entry<Operation, Samples> entry : future.get().entrySet()) {
+                    merged.get(entry.getKey()).addAll(entry.getValue());
+                }
+            }
+            return new Report(strategy, System.nanoTime() - start, merged);
+        } catch (final ExecutionException e) {
+            throw new IllegalStateException("Worker failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private Map<Operation, Samples> work(final RefreshStrategy strategy, final SplittableRandom random, final Semaphore transactions) throws InterruptedException {
+        final Map<Operation, Samples> samples = newSamples();
+        for (int i = 0; i < operationsPerWorker; i++) {
+            final double dice = random.nextDouble();
+            final Operation operation = dice < readRatio ? Operation.READ : dice < readRatio + updateRatio ? Operation.UPDATE_NESTED : Operation.REFRESH;
+            final String name = rowName(random.nextInt(rows));
+
+            final long start = System.nanoTime();
+            transactions.acquire();
+            Outcome outcome = Outcome.SUCCESS;
+            try {
+                if (retry != null) {
+                    retry.inTransaction(em -> execute(em, operation, strategy, name));
+                } else {
+                    inTransaction(em -> execute(em, operation, strategy, name));
+                }
+            } catch (final RuntimeException e) {
+                outcome = LockRetry.isLockFailure(e) ? Outcome.LOCK_FAILURE : Outcome.ERROR;
+            } finally {
+                transactions.release();
+            }
+            samples.get(operation).record(outcome, System.nanoTime() - start);
+        }
+        return samples;
+    }
+
+    private void execute(final EntityManager em, final Operation operation, final RefreshStrategy strategy, final String name) {
+        final CascadeRefreshEntity entity = CascadeRefreshEntity.findByName(em, name);
+        switch (operation) {
+            case READ:
+                break;
+            case UPDATE_NESTED:
+                entity.second.name = "nested updated at " + System.nanoTime();
+                break;
+            case REFRESH:
+                strategy.refresh(em, entity);
+                sleep(lockHoldMillis);
+                if (updateRoot) {
+                    final int next = (nestedIds.indexOf(entity.second.id) + 1) % nestedIds.size();
+                    entity.second = em.getReference(NestedEntity.class, nestedIds.get(next));
+                }
+                break;
+        }
+    }
+
+    private void inTransaction(final Consumer<EntityManager> tx) {
+        final EntityManager em = entityManagerFactory.createEntityManager();
+        final EntityTransaction transaction = em.getTransaction();
+        transaction.begin();
+        try {
+            tx.accept(em);
+            if (transaction.getRollbackOnly()) {
+                transaction.rollback();
+            } else {
+                transaction.commit();
+            }
+        } catch (final RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    private static String rowName(final int index) {
+        return "row-" + index;
+    }
+
+    private static void sleep(final long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS, LOCK_FAILURE, ERROR
+    }
+
+    /**
+     * Latencies and outcomes of one operation type.
+     */
+    private static final class Samples {
+
+        private final Histogram latencies = new Histogram(3);
+        private int lockFailures;
+        private int errors;
+
+        void record(final Outcome outcome, final long nanos) {
+            latencies.recordValue(nanos);
+            if (outcome == Outcome.LOCK_FAILURE) {
+                lockFailures++;
+            } else if (outcome == Outcome.ERROR) {
+                errors++;
+            }
+        }
+
+        void addAll(final Samples other) {
+            latencies.add(other.latencies);
+            lockFailures += other.lockFailures;
+            errors += other.errors;
+        }
+    }
+
+    private static Map<Operation, Samples> newSamples() {
+        final Map<Operation, Samples> samples = new EnumMap<>(Operation.class);
+        for (final Operation operation : Operation.values()) {
+            samples.put(operation, new Samples());
+        }
+        return samples;
+    }
+
+    public static final class Report {
+
+        public final RefreshStrategy strategy;
+        public final long elapsedNanos;
+        public final Map<Operation, OperationStats> operations;
+
+        Report(final RefreshStrategy strategy, final long elapsedNanos, final Map<Operation, Samples> samples) {
+            this.strategy = strategy;
+            this.elapsedNanos = elapsedNanos;
+            this.operations = new EnumMap<>(Operation.class);
+            for (final Map.Entry<Operation, Samples> entry : samples.entrySet()) {
+                final Samples operation = entry.getValue();
+                operations.put(entry.getKey(), new OperationStats(operation.latencies, operation.lockFailures, operation.errors));
+            }
+        }
+
+        public int total() {
+            return operations.values().stream().mapToInt(stats -> stats.count).sum();
+        }
+
+        public double throughput() {
+            return total() / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder report = new StringBuilder(String.format("%s: %d ops in %d ms, %.0f ops/s%n", strategy, total(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), throughput()));
+            report.append(String.format("  %-14s %8s %10s %8s %10s %10s %10s%n", "operation", "count", "lock fail", "errors", "p50 ms", "p99 ms", "p999 ms"));
+            for (final Map.Entry<Operation, OperationStats> entry : operations.entrySet()) {
+                final OperationStats stats = entry.getValue();
+                report.append(String.format("  %-14s %8d %9.2f%% %8d %10.2f %10.2f %10.2f%n", entry.getKey(), stats.count, stats.lockFailureRate() * 100, stats.errors,
+                        stats.p50 / 1e6, stats.p99 / 1e6, stats.p999 / 1e6));
+            }
+            return report.toString();
+        }
+    }
+
+    public static final class OperationStats {
+
+        public final int count;
+        public final int lockFailures;
+        public final int errors;
+        public final long p50;
+        public final long p99;
+        public final long p999;
+
+        OperationStats(final Histogram latencies, final int lockFailures, final int errors) {
+            this.count = (int) latencies.getTotalCount();
+            this.lockFailures = lockFailures;
+            this.errors = errors;
+            this.p50 = latencies.getValueAtPercentile(50);
+            this.p99 = latencies.getValueAtPercentile(99);
+            this.p999 = latencies.getValueAtPercentile(99.9);
+        }
+
+        public double lockFailureRate() {
+            return count == 0 ? 0 : lockFailures / (double) count;
+        }
+    }
+}
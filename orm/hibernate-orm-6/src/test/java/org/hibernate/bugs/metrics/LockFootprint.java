@@ -0,0 +1,195 @@
+package org.hibernate.bugs.metrics;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+import org.h2.api.ErrorCode;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.mapping.TableDetails;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+
+/**
+ * The rows locked when the snapshot was taken, by table and primary key: a way to see that an operation locked more
+ * than it meant to, such as the {@code NestedEntity} row of a locking {@code refresh} on InnoDB.
+ * <p>
+ * Only statements already sent count: changes still waiting for a flush hold no lock yet, and {@link #of} does not
+ * flush. Tables are reported in lower case and keys as text, the columns of a composite key joined by {@code ", "}.
+ * <ul>
+ * <li>On MySQL the snapshot reads the granted record locks on {@code PRIMARY} indexes from
+ * {@code performance_schema.data_locks}, for the connection of the entity manager only. The database user needs
+ * {@code SELECT} on that table. Gap locks on the supremum pseudo-record have no key and are left out.</li>
+ * <li>H2 has no view of its row locks, so every row of every mapped table is probed with {@code select ... for update}
+ * and a lock timeout of one millisecond, from a new connection opened with the settings of the Hikari pool, and the
+ * rows that time out are reported. The probe cannot tell whose lock it ran into, so rows locked by other transactions
+ * are reported too, and it reads every table once: it is meant for the few rows of a test.</li>
+ * </ul>
+ */
+public final class LockFootprint {
+
+    private static final String DATA_LOCKS = "select object_name, lock_data from performance_schema.data_locks"
+            + " where thread_id = ps_current_thread_id() and lock_type = 'RECORD' and index_name = 'PRIMARY'"
+            + " and lock_status = 'GRANTED' and lock_data <> 'supremum pseudo-record'"
+            + " order by object_name, lock_data";
+
+    private final Map<String, Set<String>> rows;
+
+    private LockFootprint(final Map<String, Set<String>> rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Snapshot of the row locks held by the transaction of the entity manager.
+     */
+    public static LockFootprint of(final EntityManager em) {
+        final Session session = em.unwrap(Session.class);
+        final SessionFactoryImplementor sessionFactory = session.getSessionFactory().unwrap(SessionFactoryImplementor.class);
+        final Dialect dialect = sessionFactory.getJdbcServices().getDialect();
+
+        final Map<String, Set<String>> rows = new TreeMap<>();
+        if (dialect instanceof MySQLDialect) {
+            session.doWork(connection -> readDataLocks(connection, rows));
+        } else if (dialect instanceof H2Dialect) {
+            try {
+                probe(sessionFactory, rows);
+            } catch (final SQLException e) {
+                throw new PersistenceException("Could not probe the row locks", e);
+            }
+        } else {
+            throw new UnsupportedOperationException("No lock view for " + dialect.getClass().getSimpleName());
+        }
+        return new LockFootprint(rows);
+    }
+
+    /**
+     * Locked tables, in lower case.
+     */
+    public Set<String> tables() {
+        return Collections.unmodifiableSet(rows.keySet());
+    }
+
+    /**
+     * Locked keys of the table, empty if it has none.
+     */
+    public Set<String> keys(final String table) {
+        return Collections.unmodifiableSet(rows.getOrDefault(table.toLowerCase(Locale.ROOT), Set.of()));
+    }
+
+    public boolean isLocked(final String table, final Object id) {
+        return keys(table).contains(String.valueOf(id));
+    }
+
+    /**
+     * Locked rows over all tables.
+     */
+    public int rowCount() {
+        return rows.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @Override
+    public String toString() {
+        if (rows.isEmpty()) {
+            return "no row locks";
+        }
+        final StringJoiner joiner = new StringJoiner(", ");
+        rows.forEach((table, keys) -> joiner.add(table + keys));
+        return joiner.toString();
+    }
+
+    private static void readDataLocks(final Connection connection, final Map<String, Set<String>> rows) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(DATA_LOCKS)) {
+            while (resultSet.next()) {
+                add(rows, resultSet.getString(1), resultSet.getString(2));
+            }
+        }
+    }
+
+    private static void probe(final SessionFactoryImplementor sessionFactory, final Map<String, Set<String>> rows) throws SQLException {
+        final Map<String, List<String>> keyColumns = new TreeMap<>();
+        sessionFactory.getMappingMetamodel().forEachEntityDescriptor(persister -> {
+            final TableDetails table = persister.getIdentifierTableDetails();
+            final List<String> columns = new ArrayList<>();
+            table.getKeyDetails().forEachKeyColumn((position, column) -> columns.add(column.getColumnName()));
+            keyColumns.put(table.getTableName(), columns);
+        });
+
+        // a connection of its own rather than one of the pool, whose lock timeout it would change
+        final HikariDataSource dataSource = sessionFactory.getServiceRegistry().requireService(ConnectionProvider.class).unwrap(HikariDataSource.class);
+        try (Connection probe = DriverManager.getConnection(dataSource.getJdbcUrl(), dataSource.getUsername(), dataSource.getPassword())) {
+            try (Statement statement = probe.createStatement()) {
+                // zero would fall back to the default wait of two seconds
+                statement.execute("set lock_timeout 1");
+            }
+            probe.setAutoCommit(false);
+            try {
+                for (final Map.Entry<String, List<String>> table : keyColumns.entrySet()) {
+                    probeTable(probe, table.getKey(), table.getValue(), rows);
+                }
+            } finally {
+                probe.rollback();
+            }
+        }
+    }
+
+    private static void probeTable(final Connection probe, final String table, final List<String> columns, final Map<String, Set<String>> rows) throws SQLException {
+        final String keys = String.join(", ", columns);
+        final List<Object[]> candidates = new ArrayList<>();
+        try (Statement statement = probe.createStatement();
+             ResultSet resultSet = statement.executeQuery("select " + keys + " from " + table + " order by " + keys)) {
+            while (resultSet.next()) {
+                final Object[] key = new Object[columns.size()];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = resultSet.getObject(i + 1);
+                }
+                candidates.add(key);
+            }
+        }
+
+        final String lock = "select 1 from " + table + " where " + String.join(" = ? and ", columns) + " = ? for update";
+        try (PreparedStatement statement = probe.prepareStatement(lock)) {
+            for (final Object[] key : candidates) {
+                for (int i = 0; i < key.length; i++) {
+                    statement.setObject(i + 1, key[i]);
+                }
+                try (ResultSet ignored = statement.executeQuery()) {
+                    // the row was free, and stays locked by the probe until its rollback
+                } catch (final SQLException e) {
+                    if (e.getErrorCode() != ErrorCode.LOCK_TIMEOUT_1) {
+                        throw e;
+                    }
+                    final StringJoiner value = new StringJoiner(", ");
+                    for (final Object column : key) {
+                        value.add(String.valueOf(column));
+                    }
+                    add(rows, table, value.toString());
+                }
+            }
+        }
+    }
+
+    private static void add(final Map<String, Set<String>> rows, final String table, final String key) {
+        rows.computeIfAbsent(table.toLowerCase(Locale.ROOT), t -> new LinkedHashSet<>()).add(key);
+    }
+}
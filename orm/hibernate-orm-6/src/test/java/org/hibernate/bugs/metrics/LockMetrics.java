@@ -0,0 +1,174 @@
+package org.hibernate.bugs.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.stat.Statistics;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Pessimistic lock timings per entity type, recorded by event listeners around refresh, lock and find.
+ * <ul>
+ * <li><em>acquisition</em>: how long a {@code refresh}, {@code lock} or {@code find} with a pessimistic lock mode
+ * took, which includes the wait for a conflicting lock;</li>
+ * <li><em>hold</em>: from the first lock a transaction took on an entity type to its commit or rollback;</li>
+ * <li><em>failures</em>: pessimistic calls that failed to get their lock.</li>
+ * </ul>
+ * The statement that gets the lock is attributed to the entity it was issued for: the locking {@code refresh} of an
+ * entity with an eager join locks the joined {@code NestedEntity} row on InnoDB, but counts as a
+ * {@code CascadeRefreshEntity} lock here. Locks taken by queries, such as {@code RootLockRefresh} and
+ * {@code SkipLockedClaim}, bypass these listeners and are not recorded.
+ * <p>
+ * Durations are kept in HdrHistogram histograms, in microseconds. Optimistic lock failures come from Hibernate's
+ * {@link Statistics}, which {@link #install} enables.
+ */
+public final class LockMetrics {
+
+    private static final ConcurrentMap<SessionFactoryImplementor, LockMetrics> INSTALLED = new ConcurrentHashMap<>();
+
+    private final Statistics statistics;
+    private final ConcurrentMap<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private final ConcurrentHistogram flush = new ConcurrentHistogram(3);
+
+    private LockMetrics(final Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Wraps the refresh, lock, load and flush listeners of the factory with timing ones; installing twice returns the
+     * metrics of the first call. The metrics are forgotten when the factory closes.
+     */
+    public static LockMetrics install(final EntityManagerFactory entityManagerFactory) {
+        final SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        return INSTALLED.computeIfAbsent(sessionFactory, sf -> {
+            sf.getStatistics().setStatisticsEnabled(true);
+            final LockMetrics metrics = new LockMetrics(sf.getStatistics());
+            LockTimingListeners.register(sf.getServiceRegistry().requireService(EventListenerRegistry.class), metrics);
+            sf.addObserver(new SessionFactoryObserver() {
+                @Override
+                public void sessionFactoryClosed(final SessionFactory factory) {
+                    INSTALLED.remove(sf);
+                }
+            });
+            return metrics;
+        });
+    }
+
+    public EntityLockStats get(final Class<?> entityClass) {
+        return get(entityClass.getName());
+    }
+
+    public EntityLockStats get(final String entityName) {
+        final Recorder recorder = recorders.get(entityName);
+        final long optimisticFailures = statistics.getEntityStatistics(entityName).getOptimisticFailureCount();
+        return recorder == null
+                ? new EntityLockStats(entityName, new Histogram(3), new Histogram(3), 0, optimisticFailures)
+                : recorder.snapshot(entityName, optimisticFailures);
+    }
+
+    /**
+     * Stats of every entity type that took or failed a pessimistic lock, by entity name.
+     */
+    public Map<String, EntityLockStats> snapshot() {
+        final Map<String, EntityLockStats> snapshot = new TreeMap<>();
+        for (final String entityName : recorders.keySet()) {
+            snapshot.put(entityName, get(entityName));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Flush durations of all sessions, in microseconds; a flush holds the row locks of the updates it executes until
+     * the transaction ends.
+     */
+    public Histogram flush() {
+        return flush.copy();
+    }
+
+    public void reset() {
+        recorders.clear();
+        flush.reset();
+        statistics.clear();
+    }
+
+    void recordAcquisition(final String entityName, final long nanos) {
+        recorder(entityName).acquisition.recordValue(toMicros(nanos));
+    }
+
+    void recordHold(final String entityName, final long nanos) {
+        recorder(entityName).hold.recordValue(toMicros(nanos));
+    }
+
+    void recordFailure(final String entityName) {
+        recorder(entityName).failures.increment();
+    }
+
+    void recordFlush(final long nanos) {
+        flush.recordValue(toMicros(nanos));
+    }
+
+    private Recorder recorder(final String entityName) {
+        return recorders.computeIfAbsent(entityName, unused -> new Recorder());
+    }
+
+    private static long toMicros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static final class Recorder {
+
+        private final ConcurrentHistogram acquisition = new ConcurrentHistogram(3);
+        private final ConcurrentHistogram hold = new ConcurrentHistogram(3);
+        private final LongAdder failures = new LongAdder();
+
+        EntityLockStats snapshot(final String entityName, final long optimisticFailures) {
+            return new EntityLockStats(entityName, acquisition.copy(), hold.copy(), failures.sum(), optimisticFailures);
+        }
+    }
+
+    /**
+     * Copy of the metrics of one entity type at the time it was taken.
+     */
+    public static final class EntityLockStats {
+
+        public final String entityName;
+        public final Histogram acquisition;
+        public final Histogram hold;
+        public final long failures;
+        public final long optimisticFailures;
+
+        EntityLockStats(final String entityName, final Histogram acquisition, final Histogram hold, final long failures, final long optimisticFailures) {
+            this.entityName = entityName;
+            this.acquisition = acquisition;
+            this.hold = hold;
+            this.failures = failures;
+            this.optimisticFailures = optimisticFailures;
+        }
+
+        public long acquisitions() {
+            return acquisition.getTotalCount();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s: %d acquisitions (p50 %d us, p99 %d us, max %d us), %d holds (p50 %d us, p99 %d us, max %d us), %d failures, %d optimistic failures",
+                    entityName,
+                    acquisition.getTotalCount(), acquisition.getValueAtPercentile(50), acquisition.getValueAtPercentile(99), acquisition.getMaxValue(),
+                    hold.getTotalCount(), hold.getValueAtPercentile(50), hold.getValueAtPercentile(99), hold.getMaxValue(),
+                    failures, optimisticFailures
+            );
+        }
+    }
+}
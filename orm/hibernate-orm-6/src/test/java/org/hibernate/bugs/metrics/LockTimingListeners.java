@@ -0,0 +1,194 @@
+package org.hibernate.bugs.metrics;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.hibernate.HibernateException;
+import org.hibernate.LockMode;
+import org.hibernate.bugs.refresh.LockRetry;
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.FlushEvent;
+import org.hibernate.event.spi.FlushEventListener;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.event.spi.LockEvent;
+import org.hibernate.event.spi.LockEventListener;
+import org.hibernate.event.spi.RefreshContext;
+import org.hibernate.event.spi.RefreshEvent;
+import org.hibernate.event.spi.RefreshEventListener;
+
+import jakarta.transaction.Synchronization;
+
+/**
+ * Listeners that time the default ones they replace and report to {@link LockMetrics}.
+ */
+final class LockTimingListeners {
+
+    private static final Set<LockMode> PESSIMISTIC = EnumSet.of(
+            LockMode.PESSIMISTIC_READ,
+            LockMode.PESSIMISTIC_WRITE,
+            LockMode.PESSIMISTIC_FORCE_INCREMENT,
+            LockMode.UPGRADE_NOWAIT,
+            LockMode.UPGRADE_SKIPLOCKED
+    );
+
+    private final LockMetrics metrics;
+    private final ConcurrentMap<EventSource, HeldLocks> held = new ConcurrentHashMap<>();
+
+    private LockTimingListeners(final LockMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    static void register(final EventListenerRegistry registry, final LockMetrics metrics) {
+        final LockTimingListeners listeners = new LockTimingListeners(metrics);
+        wrap(registry.getEventListenerGroup(EventType.REFRESH), delegate -> listeners.new Refresh(delegate));
+        wrap(registry.getEventListenerGroup(EventType.LOCK), delegate -> listeners.new Lock(delegate));
+        wrap(registry.getEventListenerGroup(EventType.LOAD), delegate -> listeners.new Load(delegate));
+        wrap(registry.getEventListenerGroup(EventType.FLUSH), delegate -> listeners.new Flush(delegate));
+    }
+
+    private static <T> void wrap(final EventListenerGroup<T> group, final Function<T, T> wrapper) {
+        final List<T> delegates = new ArrayList<>();
+        group.listeners().forEach(delegates::add);
+        group.clearListeners();
+        for (final T delegate : delegates) {
+            group.appendListener(wrapper.apply(delegate));
+        }
+    }
+
+    private void timed(final EventSource session, final String entityName, final LockMode lockMode, final Runnable call) {
+        if (lockMode == null || !PESSIMISTIC.contains(lockMode)) {
+            call.run();
+            return;
+        }
+        final long start = System.nanoTime();
+        try {
+            call.run();
+        } catch (final RuntimeException e) {
+            if (LockRetry.isLockFailure(e)) {
+                metrics.recordFailure(entityName);
+            }
+            throw e;
+        }
+        final long acquired = System.nanoTime();
+        metrics.recordAcquisition(entityName, acquired - start);
+        held.computeIfAbsent(session, this::track).acquired(entityName, acquired);
+    }
+
+    private HeldLocks track(final EventSource session) {
+        final HeldLocks locks = new HeldLocks(session);
+        session.getTransaction().registerSynchronization(locks);
+        return locks;
+    }
+
+    private static String entityName(final EventSource session, final String entityName, final Object entity) {
+        return entityName != null ? entityName : session.bestGuessEntityName(entity);
+    }
+
+    /**
+     * Entity types a transaction holds locks on, with the time of the first lock on each.
+     */
+    private final class HeldLocks implements Synchronization {
+
+        private final EventSource session;
+        private final Map<String, Long> firstAcquired = new HashMap<>();
+
+        HeldLocks(final EventSource session) {
+            this.session = session;
+        }
+
+        void acquired(final String entityName, final long nanos) {
+            firstAcquired.putIfAbsent(entityName, nanos);
+        }
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            final long released = System.nanoTime();
+            firstAcquired.forEach((entityName, acquired) -> metrics.recordHold(entityName, released - acquired));
+            held.remove(session);
+        }
+    }
+
+    private final class Refresh implements RefreshEventListener {
+
+        private final RefreshEventListener delegate;
+
+        Refresh(final RefreshEventListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onRefresh(final RefreshEvent event) throws HibernateException {
+            timed(event.getSession(), entityName(event.getSession(), event.getEntityName(), event.getObject()), event.getLockMode(),
+                    () -> delegate.onRefresh(event));
+        }
+
+        @Override
+        public void onRefresh(final RefreshEvent event, final RefreshContext refreshedAlready) throws HibernateException {
+            timed(event.getSession(), entityName(event.getSession(), event.getEntityName(), event.getObject()), event.getLockMode(),
+                    () -> delegate.onRefresh(event, refreshedAlready));
+        }
+    }
+
+    private final class Lock implements LockEventListener {
+
+        private final LockEventListener delegate;
+
+        Lock(final LockEventListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onLock(final LockEvent event) throws HibernateException {
+            timed(event.getSession(), entityName(event.getSession(), event.getEntityName(), event.getObject()), event.getLockMode(),
+                    () -> delegate.onLock(event));
+        }
+    }
+
+    private final class Load implements LoadEventListener {
+
+        private final LoadEventListener delegate;
+
+        Load(final LoadEventListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onLoad(final LoadEvent event, final LoadType loadType) throws HibernateException {
+            timed(event.getSession(), event.getEntityClassName(), event.getLockMode(), () -> delegate.onLoad(event, loadType));
+        }
+    }
+
+    private final class Flush implements FlushEventListener {
+
+        private final FlushEventListener delegate;
+
+        Flush(final FlushEventListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onFlush(final FlushEvent event) throws HibernateException {
+            final long start = System.nanoTime();
+            try {
+                delegate.onFlush(event);
+            } finally {
+                metrics.recordFlush(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.hibernate.bugs.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * HikariCP metrics of a persistence unit's connection pool: how long threads wait for a connection, how long they keep
+ * it, how many waits time out, and how many connections are in use.
+ * <p>
+ * {@link #install} registers it as the metrics tracker of a factory's pool once the pool is running, since Hikari
+ * cannot instantiate a tracker from a {@code hibernate.hikari.*} string property; connections taken while Hibernate
+ * boots are therefore not recorded. Waits are recorded in microseconds and usage in milliseconds, as Hikari reports
+ * them.
+ */
+public final class PoolMetrics implements MetricsTrackerFactory {
+
+    private final ConcurrentHistogram acquisition = new ConcurrentHistogram(3);
+    private final ConcurrentHistogram usage = new ConcurrentHistogram(3);
+    private final LongAdder timeouts = new LongAdder();
+    private final AtomicInteger maxPending = new AtomicInteger();
+    private final HikariPoolMXBean pool;
+
+    private PoolMetrics(final HikariPoolMXBean pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Registers the metrics with the Hikari pool of the factory; installing twice returns the metrics of the first call.
+     */
+    public static PoolMetrics install(final EntityManagerFactory entityManagerFactory) {
+        final HikariDataSource dataSource = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .requireService(ConnectionProvider.class)
+                .unwrap(HikariDataSource.class);
+        synchronized (dataSource) {
+            if (dataSource.getMetricsTrackerFactory() instanceof PoolMetrics) {
+                return (PoolMetrics) dataSource.getMetricsTrackerFactory();
+            }
+            final PoolMetrics metrics = new PoolMetrics(dataSource.getHikariPoolMXBean());
+            dataSource.setMetricsTrackerFactory(metrics);
+            return metrics;
+        }
+    }
+
+    @Override
+    public IMetricsTracker create(final String poolName, final PoolStats poolStats) {
+        return new IMetricsTracker() {
+
+            @Override
+            public void recordConnectionAcquiredNanos(final long elapsedAcquiredNanos) {
+                acquisition.recordValue(TimeUnit.NANOSECONDS.toMicros(elapsedAcquiredNanos));
+                maxPending.accumulateAndGet(poolStats.getPendingThreads(), Math::max);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(final long elapsedBorrowedMillis) {
+                usage.recordValue(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    /**
+     * Time to get a connection from the pool, in microseconds.
+     */
+    public Histogram acquisition() {
+        return acquisition.copy();
+    }
+
+    /**
+     * Time a connection stayed borrowed, in milliseconds; for a transaction, from {@code begin()} to its end.
+     */
+    public Histogram usage() {
+        return usage.copy();
+    }
+
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    public int activeConnections() {
+        return pool.getActiveConnections();
+    }
+
+    public int threadsAwaitingConnection() {
+        return pool.getThreadsAwaitingConnection();
+    }
+
+    /**
+     * Most threads seen waiting for a connection, sampled as Hikari refreshes its pool stats.
+     */
+    public int maxPending() {
+        return maxPending.get();
+    }
+
+    public void reset() {
+        acquisition.reset();
+        usage.reset();
+        timeouts.reset();
+        maxPending.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "pool: %d acquisitions (p50 %d us, p99 %d us, max %d us), usage p99 %d ms, %d timeouts, %d max pending",
+                acquisition.getTotalCount(), acquisition.getValueAtPercentile(50), acquisition.getValueAtPercentile(99), acquisition.getMaxValue(),
+                usage.getValueAtPercentile(99), timeouts(), maxPending()
+        );
+    }
+}
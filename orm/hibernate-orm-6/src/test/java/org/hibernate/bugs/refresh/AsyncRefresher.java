@@ -0,0 +1,143 @@
+package org.hibernate.bugs.refresh;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+
+/**
+ * Runs refreshes, each in its own {@link EntityManager} and transaction, without blocking the caller: independent
+ * refreshes can be fanned out and joined instead of being run one after the other.
+ * <p>
+ * At most {@code maxConcurrency} calls run at once, so that a burst of calls does not exhaust the connection pool: on
+ * virtual threads, when the runtime has them, each call waits for a permit of a fair semaphore, and otherwise the calls
+ * run on a pool of {@code maxConcurrency} threads and the others wait in its queue, so that a burst does not start a
+ * platform thread per call either.
+ * <p>
+ * A call that loses a lock race, as told by {@link LockRetry#isLockFailure}, completes with the lock exception itself,
+ * whether Hibernate threw it directly or wrapped in the exception of a failed commit: a
+ * {@link PessimisticLockException} for a lock conflict or deadlock, a {@link LockTimeoutException} for a lock wait
+ * timeout, an {@link OptimisticLockException} for a failed version check, or the Hibernate
+ * {@code LockAcquisitionException}, {@code PessimisticLockException} or {@code StaleStateException} in the rare case
+ * one reaches it unconverted. Other failures complete the future unchanged.
+ */
+public final class AsyncRefresher implements AutoCloseable {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    public AsyncRefresher(final EntityManagerFactory entityManagerFactory, final int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Invalid concurrency limit: " + maxConcurrency);
+        }
+        this.entityManagerFactory = entityManagerFactory;
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.executor = newExecutor(maxConcurrency);
+    }
+
+    /**
+     * Loads the entity and refreshes it with the strategy; the entity is detached when the future completes.
+     */
+    public <T> CompletableFuture<T> refresh(final Class<T> entityClass, final Object id, final RefreshStrategy strategy) {
+        return inTransaction(em -> {
+            final T entity = em.find(entityClass, id);
+            if (entity == null) {
+                throw new EntityNotFoundException("No " + entityClass.getSimpleName() + " with id " + id);
+            }
+            strategy.refresh(em, entity);
+            return entity;
+        });
+    }
+
+    /**
+     * Runs the work in a new transaction, committed unless the work marks it rollback-only, and rolled back if it
+     * throws.
+     */
+    public <T> CompletableFuture<T> inTransaction(final Function<EntityManager, T> work) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(work, future));
+        } catch (final RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> void run(final Function<EntityManager, T> work, final CompletableFuture<T> future) {
+        try {
+            permits.acquire();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return;
+        }
+        try {
+            future.complete(fromTransaction(work));
+        } catch (final RuntimeException e) {
+            final Throwable lockFailure = LockRetry.lockFailure(e);
+            future.completeExceptionally(lockFailure != null ? lockFailure : e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private <T> T fromTransaction(final Function<EntityManager, T> work) {
+        final EntityManager em = entityManagerFactory.createEntityManager();
+        final EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            final T result = work.apply(em);
+            if (transaction.getRollbackOnly()) {
+                transaction.rollback();
+            } else {
+                transaction.commit();
+            }
+            return result;
+        } catch (final RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Stops accepting work and waits for the calls in flight.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A virtual thread per task on Java 21+, a pool of at most {@code maxThreads} threads queueing the other tasks
+     * before.
+     */
+    public static ExecutorService newExecutor(final int maxThreads) {
+        try {
+            // looked up reflectively since the module targets Java 11
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final NoSuchMethodException e) {
+            return Executors.newFixedThreadPool(maxThreads);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create a virtual thread executor", e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.hibernate.bugs.refresh;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.LockMode;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Refresh of the named attributes only, e.g. {@code refresh(em, entity, PESSIMISTIC_WRITE, "name")}: one
+ * single-table {@code select id, name ... where id in (...)} per chunk, carrying the lock, so only the root rows are
+ * locked and only the named columns are transferred and hydrated.
+ * <p>
+ * The selected values overwrite the attributes and their dirty-check snapshot, so unflushed changes of those
+ * attributes are discarded and the next flush finds nothing to write for them; changes of the other attributes stay
+ * pending. An association is reset to a reference to its current target, whose state is not refreshed, and
+ * {@code CascadeType.REFRESH} is not applied.
+ * <p>
+ * The version is only refreshed when it is named. Otherwise the entity keeps the version it was read with, and a
+ * later update or version check fails if the row changed since, as it should: updates write every column, and the
+ * other attributes may be older than the row. For the same reason, naming {@code version} without the other
+ * attributes lets a later update overwrite concurrent changes of the attributes that were not refreshed.
+ */
+public final class AttributeRefresh {
+
+    private AttributeRefresh() {
+    }
+
+    public static void refresh(final EntityManager em, final Object entity, final LockModeType lockMode, final String... attributes) {
+        refreshAll(em, List.of(entity), lockMode, attributes);
+    }
+
+    public static void refreshAll(final EntityManager em, final Collection<?> entities, final LockModeType lockMode, final String... attributes) {
+        if (attributes.length == 0) {
+            throw new IllegalArgumentException("No attribute to refresh");
+        }
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        final Map<EntityPersister, List<Object>> byPersister = StateReload.groupByPersister(session, entities, Collections.newSetFromMap(new IdentityHashMap<>()));
+
+        // optimistic modes are left to em.lock below, the query only takes row locks
+        final LockModeType rowLock = !RootLockRefresh.isPessimistic(lockMode) ? LockModeType.NONE
+                : lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT ? LockModeType.PESSIMISTIC_WRITE : lockMode;
+        for (final Map.Entry<EntityPersister, List<Object>> group : byPersister.entrySet()) {
+            final EntityPersister persister = group.getKey();
+            final int[] properties = StateReload.properties(persister, attributes);
+
+            final Map<Object, Object> byId = new LinkedHashMap<>();
+            for (final Object entity : group.getValue()) {
+                byId.put(persister.getIdentifier(entity, session), entity);
+            }
+            final Map<Object, Object[]> rows = StateReload.load(session, persister, properties, byId.keySet(), rowLock, StateReload.DEFAULT_CHUNK_SIZE);
+
+            for (final Map.Entry<Object, Object> entry : byId.entrySet()) {
+                final Object[] values = rows.get(entry.getKey());
+                if (values == null) {
+                    throw new EntityNotFoundException("No row with the given identifier exists: [" + persister.getEntityName() + "#" + entry.getKey() + "]");
+                }
+                StateReload.apply(session, persister, entry.getValue(), properties, values);
+                if (rowLock != LockModeType.NONE) {
+                    session.getPersistenceContextInternal().getEntry(entry.getValue()).setLockMode(LockMode.fromJpaLockMode(rowLock));
+                }
+            }
+        }
+
+        if (lockMode != rowLock) {
+            // the state is read and the rows are locked if need be, so this only registers the version check or bumps
+            // the version
+            for (final Object entity : entities) {
+                em.lock(entity, lockMode);
+            }
+        }
+    }
+}
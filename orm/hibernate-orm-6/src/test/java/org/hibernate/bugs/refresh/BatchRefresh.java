@@ -0,0 +1,87 @@
+package org.hibernate.bugs.refresh;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.LockMode;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Refreshes many managed entities with one {@code where id in (...)} statement per chunk instead of one refresh per
+ * instance. Associations mapped with {@code CascadeType.REFRESH} are refreshed the same way, with one more statement
+ * per chunk and level.
+ * <p>
+ * As with {@link RootLockRefresh}, the requested lock is taken on the given entities only: cascaded rows are
+ * reloaded without a lock. Optimistic modes are applied to the given entities with {@code em.lock} once they are
+ * reloaded, so {@code OPTIMISTIC} checks their versions at commit and {@code OPTIMISTIC_FORCE_INCREMENT} increments
+ * them.
+ */
+public final class BatchRefresh {
+
+    private BatchRefresh() {
+    }
+
+    public static void refreshAll(final EntityManager em, final Collection<?> entities, final LockModeType lockMode) {
+        refreshAll(em, entities, lockMode, StateReload.DEFAULT_CHUNK_SIZE);
+    }
+
+    public static void refreshAll(final EntityManager em, final Collection<?> entities, final LockModeType lockMode, final int chunkSize) {
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        // optimistic modes are left to em.lock below, the query only takes row locks
+        final LockModeType rowLock = !RootLockRefresh.isPessimistic(lockMode) ? LockModeType.NONE
+                : lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT ? LockModeType.PESSIMISTIC_WRITE : lockMode;
+        refreshAll(session, entities, rowLock, chunkSize, visited);
+
+        if (lockMode != rowLock) {
+            // the rows are fresh, and locked if need be, so this only registers the version check or bumps the version
+            for (final Object entity : entities) {
+                em.lock(entity, lockMode);
+            }
+        }
+    }
+
+    private static void refreshAll(final SessionImplementor session, final Collection<?> entities, final LockModeType rowLock, final int chunkSize, final Set<Object> visited) {
+        final Map<EntityPersister, List<Object>> byPersister = StateReload.groupByPersister(session, entities, visited);
+
+        for (final Map.Entry<EntityPersister, List<Object>> group : byPersister.entrySet()) {
+            final EntityPersister persister = group.getKey();
+            final int[] properties = StateReload.allProperties(persister);
+
+            final Map<Object, Object> byId = new LinkedHashMap<>();
+            for (final Object entity : group.getValue()) {
+                byId.put(persister.getIdentifier(entity, session), entity);
+            }
+            final Map<Object, Object[]> rows = StateReload.load(session, persister, properties, byId.keySet(), rowLock, chunkSize);
+
+            final List<Object> cascaded = new ArrayList<>();
+            for (final Map.Entry<Object, Object> entry : byId.entrySet()) {
+                final Object[] values = rows.get(entry.getKey());
+                if (values == null) {
+                    throw new EntityNotFoundException("No row with the given identifier exists: [" + persister.getEntityName() + "#" + entry.getKey() + "]");
+                }
+                StateReload.apply(session, persister, entry.getValue(), properties, values);
+                if (rowLock != LockModeType.NONE) {
+                    session.getPersistenceContextInternal().getEntry(entry.getValue()).setLockMode(LockMode.fromJpaLockMode(rowLock));
+                }
+                // all properties were selected, so the values are the full state
+                StateReload.collectCascaded(persister, values, cascaded);
+            }
+
+            if (!cascaded.isEmpty()) {
+                refreshAll(session, cascaded, LockModeType.NONE, chunkSize, visited);
+            }
+        }
+    }
+}
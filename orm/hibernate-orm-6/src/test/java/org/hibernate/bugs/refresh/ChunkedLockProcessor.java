@@ -0,0 +1,195 @@
+package org.hibernate.bugs.refresh;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import org.hibernate.FlushMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.SelectionQuery;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Walks every entity matching a predicate, locks it and hands it to a unit of work, committing every
+ * {@code commitInterval} entities, without ever holding the whole result or a growing persistence context.
+ * <p>
+ * One {@link EntityManager} scrolls the matching identifiers forward-only, in identifier order and {@code fetchSize}
+ * rows per round trip, without a lock. A second one collects {@code commitInterval} identifiers, then in a transaction
+ * of its own locks those rows with a single-table {@code select e ... where id(e) in :ids and (predicate) order by
+ * id(e) for update}, runs the work on each entity, commits and is cleared. Only the root rows are locked, in
+ * identifier order like {@link OrderedLockRefresh}; the eager {@code second} association is loaded by a separate,
+ * non-locking select. The predicate is checked again under the lock, so rows that stopped matching since they were
+ * scrolled are skipped instead of processed twice or by mistake.
+ * <p>
+ * Memory is bounded by one chunk of entities plus what the driver buffers for the scroll. On MySQL, Connector/J
+ * reads the whole result into memory unless {@code useCursorFetch=true} is set on the URL, which makes it honor the
+ * fetch size. The scroll sees the rows committed when it started, so rows inserted meanwhile may be missed.
+ */
+public final class ChunkedLockProcessor<T> {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Class<T> entityClass;
+    private String predicate = "1 = 1";
+    private final Map<String, Object> parameters = new HashMap<>();
+    private int commitInterval = 1000;
+    private int fetchSize = 1000;
+    private LockModeType lockMode = LockModeType.PESSIMISTIC_WRITE;
+
+    public ChunkedLockProcessor(final EntityManagerFactory entityManagerFactory, final Class<T> entityClass) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.entityClass = entityClass;
+    }
+
+    /**
+     * HQL condition on the entity aliased {@code e}, e.g. {@code e.second = :from}, with its named parameters.
+     */
+    public ChunkedLockProcessor<T> withPredicate(final String predicate, final Map<String, ?> parameters) {
+        this.predicate = predicate;
+        this.parameters.clear();
+        this.parameters.putAll(parameters);
+        return this;
+    }
+
+    /**
+     * Entities locked, processed and committed per transaction.
+     */
+    public ChunkedLockProcessor<T> withCommitInterval(final int commitInterval) {
+        if (commitInterval < 1) {
+            throw new IllegalArgumentException("Invalid commit interval: " + commitInterval);
+        }
+        this.commitInterval = commitInterval;
+        return this;
+    }
+
+    /**
+     * Identifiers the driver fetches per round trip of the scroll.
+     */
+    public ChunkedLockProcessor<T> withFetchSize(final int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Invalid fetch size: " + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public ChunkedLockProcessor<T> withLockMode(final LockModeType lockMode) {
+        this.lockMode = lockMode;
+        return this;
+    }
+
+    /**
+     * Runs the work on every matching entity. A failing chunk is rolled back and its exception thrown; the chunks
+     * before it stay committed.
+     */
+    public Progress process(final BiConsumer<EntityManager, T> work) {
+        final String entityName = entityManagerFactory.getMetamodel().entity(entityClass).getName();
+        final Progress progress = new Progress();
+
+        final EntityManager reader = entityManagerFactory.createEntityManager();
+        final EntityManager writer = entityManagerFactory.createEntityManager();
+        try {
+            reader.getTransaction().begin();
+            final SelectionQuery<Object> ids = reader.unwrap(Session.class)
+                    .createSelectionQuery("select id(e) from " + entityName + " e where " + predicate + " order by id(e)", Object.class)
+                    .setFetchSize(fetchSize)
+                    .setReadOnly(true)
+                    .setHibernateFlushMode(FlushMode.MANUAL);
+            parameters.forEach(ids::setParameter);
+
+            try (ScrollableResults<Object> scroll = ids.scroll(ScrollMode.FORWARD_ONLY)) {
+                final List<Object> chunk = new ArrayList<>(commitInterval);
+                while (scroll.next()) {
+                    chunk.add(scroll.get());
+                    if (chunk.size() == commitInterval) {
+                        processChunk(writer, entityName, chunk, work, progress);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    processChunk(writer, entityName, chunk, work, progress);
+                }
+            }
+        } finally {
+            if (reader.getTransaction().isActive()) {
+                reader.getTransaction().rollback();
+            }
+            reader.close();
+            writer.close();
+        }
+        return progress;
+    }
+
+    private void processChunk(final EntityManager em, final String entityName, final List<Object> ids, final BiConsumer<EntityManager, T> work, final Progress progress) {
+        final EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            final SelectionQuery<T> query = em.unwrap(Session.class)
+                    .createSelectionQuery("select e from " + entityName + " e where id(e) in :ids and (" + predicate + ") order by id(e)", entityClass)
+                    .setParameter("ids", ids)
+                    .setLockMode(lockMode)
+                    .setHibernateFlushMode(FlushMode.MANUAL);
+            parameters.forEach(query::setParameter);
+            final List<T> entities = query.getResultList();
+
+            for (final T entity : entities) {
+                work.accept(em, entity);
+            }
+            transaction.commit();
+
+            progress.chunks++;
+            progress.processed += entities.size();
+            progress.skipped += ids.size() - entities.size();
+        } catch (final RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.clear();
+        }
+    }
+
+    /**
+     * Counts of one {@link #process} run.
+     */
+    public static final class Progress {
+
+        private long processed;
+        private long skipped;
+        private long chunks;
+
+        /**
+         * Entities handed to the work and committed.
+         */
+        public long processed() {
+            return processed;
+        }
+
+        /**
+         * Scrolled rows that no longer existed or matched once locked.
+         */
+        public long skipped() {
+            return skipped;
+        }
+
+        /**
+         * Committed transactions.
+         */
+        public long chunks() {
+            return chunks;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("processed %d rows in %d chunks, skipped %d", processed, chunks, skipped);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.hibernate.bugs.refresh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.LockAcquisitionException;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+
+/**
+ * Runs a unit of work in a transaction and, when it fails on a lock, rolls back and runs it again in a new
+ * {@link EntityManager}, up to {@code maxAttempts} times.
+ * <p>
+ * Meant for fail-fast locking ({@code innodb-lock-wait-timeout=0}, or {@code LOCK_TIMEOUT=1} on H2): a conflict comes
+ * back at once, and the wait happens here instead of in the database. Between attempts it sleeps a random time
+ * between zero and {@code baseBackoff * 2^(attempt - 1)}, capped at {@code maxBackoff} ("full jitter"), so that
+ * transactions that failed on the same row do not all come back at the same moment. Pessimistic and optimistic lock
+ * failures are retried, see {@link #isLockFailure}; any other exception is thrown at once.
+ */
+public final class LockRetry {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final Stats stats = new Stats();
+    private int maxAttempts = 5;
+    private long baseBackoffMillis = 5;
+    private long maxBackoffMillis = 200;
+
+    public LockRetry(final EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Attempts per unit of work, the first one included.
+     */
+    public LockRetry withMaxAttempts(final int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Invalid attempt budget: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public LockRetry withBackoff(final long baseBackoffMillis, final long maxBackoffMillis) {
+        if (baseBackoffMillis < 0 || maxBackoffMillis < baseBackoffMillis) {
+            throw new IllegalArgumentException("Invalid backoff: base " + baseBackoffMillis + " ms, max " + maxBackoffMillis + " ms");
+        }
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        return this;
+    }
+
+    public Stats stats() {
+        return stats;
+    }
+
+    public void inTransaction(final Consumer<EntityManager> work) {
+        fromTransaction(em -> {
+            work.accept(em);
+            return null;
+        });
+    }
+
+    /**
+     * Returns the result of the first attempt that commits; throws the failure of the last attempt when the budget is
+     * spent, or the first failure that is not a lock failure.
+     */
+    public <T> T fromTransaction(final Function<EntityManager, T> work) {
+        stats.calls.increment();
+        for (int attempt = 1; ; attempt++) {
+            stats.attempts.increment();
+            try {
+                return attempt(work);
+            } catch (final RuntimeException e) {
+                if (!isLockFailure(e)) {
+                    throw e;
+                }
+                stats.lockFailures.increment();
+                if (attempt == maxAttempts) {
+                    stats.giveUps.increment();
+                    throw e;
+                }
+                if (!backOff(attempt)) {
+                    stats.giveUps.increment();
+                    throw e;
+                }
+                stats.retries.increment();
+            }
+        }
+    }
+
+    private <T> T attempt(final Function<EntityManager, T> work) {
+        final EntityManager em = entityManagerFactory.createEntityManager();
+        final EntityTransaction transaction = em.getTransaction();
+        try {
+            transaction.begin();
+            final T result = work.apply(em);
+            if (transaction.getRollbackOnly()) {
+                transaction.rollback();
+            } else {
+                transaction.commit();
+            }
+            return result;
+        } catch (final RuntimeException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Sleeps before the next attempt; false if interrupted, leaving the interrupt flag set.
+     */
+    private boolean backOff(final int attempt) {
+        final long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 30));
+        final long millis = ceiling == 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+        stats.backoffMillis.add(millis);
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+            return true;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Whether the failure, or one of its causes, is a lost lock race: a pessimistic lock conflict, deadlock or timeout,
+     * as the JPA or the Hibernate exception, or an optimistic version check failure. The one check shared by the retry,
+     * the lock metrics and {@link AsyncRefresher}.
+     */
+    public static boolean isLockFailure(final Throwable e) {
+        return lockFailure(e) != null;
+    }
+
+    /**
+     * The outermost of the failure and its causes that is a lost lock race, see {@link #isLockFailure}, or
+     * {@code null} if none is.
+     */
+    public static Throwable lockFailure(final Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PessimisticLockException || cause instanceof LockTimeoutException || cause instanceof OptimisticLockException
+                    || cause instanceof LockAcquisitionException || cause instanceof org.hibernate.PessimisticLockException
+                    || cause instanceof StaleStateException) {
+                return cause;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Counters over all units of work run by one {@link LockRetry}.
+     */
+    public static final class Stats {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder lockFailures = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder giveUps = new LongAdder();
+        private final LongAdder backoffMillis = new LongAdder();
+
+        public long calls() {
+            return calls.sum();
+        }
+
+        public long attempts() {
+            return attempts.sum();
+        }
+
+        public long lockFailures() {
+            return lockFailures.sum();
+        }
+
+        public long retries() {
+            return retries.sum();
+        }
+
+        /**
+         * Units of work that failed on a lock with no attempt left.
+         */
+        public long giveUps() {
+            return giveUps.sum();
+        }
+
+        public long backoffMillis() {
+            return backoffMillis.sum();
+        }
+
+        public void reset() {
+            calls.reset();
+            attempts.reset();
+            lockFailures.reset();
+            retries.reset();
+            giveUps.reset();
+            backoffMillis.reset();
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "retry: %d calls, %d attempts, %d lock failures, %d retries, %d give-ups, %d ms backing off",
+                    calls(), attempts(), lockFailures(), retries(), giveUps(), backoffMillis()
+            );
+        }
+    }
+}
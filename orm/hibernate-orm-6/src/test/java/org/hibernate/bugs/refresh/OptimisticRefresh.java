@@ -0,0 +1,36 @@
+package org.hibernate.bugs.refresh;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Refresh that takes no row lock and relies on the root's {@code @Version} instead.
+ * <p>
+ * The entity (and its cascaded associations) is reloaded with a plain refresh, then the root alone gets the optimistic
+ * lock mode through {@code em.lock}. At commit, {@code OPTIMISTIC} reads the version again and
+ * {@code OPTIMISTIC_FORCE_INCREMENT} increments it with {@code update ... where version = ?}: when another transaction
+ * changed the root in between, the commit fails with an {@code OptimisticLockException} instead of anyone waiting on a
+ * lock. Passing the lock mode to {@code em.refresh} would cascade it, and check the version of the
+ * {@code NestedEntity} too; here that row gets no lock mode, so concurrent updates of it never conflict with the
+ * refresh.
+ */
+public final class OptimisticRefresh {
+
+    private OptimisticRefresh() {
+    }
+
+    public static void refresh(final EntityManager em, final Object entity, final LockModeType lockMode) {
+        if (!isOptimistic(lockMode)) {
+            throw new IllegalArgumentException("Not an optimistic lock mode: " + lockMode);
+        }
+        em.refresh(entity);
+        em.lock(entity, lockMode);
+    }
+
+    static boolean isOptimistic(final LockModeType lockMode) {
+        return lockMode == LockModeType.OPTIMISTIC
+                || lockMode == LockModeType.READ
+                || lockMode == LockModeType.OPTIMISTIC_FORCE_INCREMENT
+                || lockMode == LockModeType.WRITE;
+    }
+}
@@ -0,0 +1,135 @@
+package org.hibernate.bugs.refresh;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Hibernate;
+import org.hibernate.LockMode;
+import org.hibernate.engine.spi.CascadingActions;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Pessimistic refresh of many entities that takes every row lock in one global order, so that two transactions
+ * locking overlapping rows wait for each other instead of deadlocking.
+ * <p>
+ * {@code em.refresh(entity, PESSIMISTIC_WRITE)} locks the root row and, on InnoDB, the joined {@code NestedEntity}
+ * row with the same statement, and a loop of refreshes takes those locks in whatever order the caller lists the
+ * entities. Here the rows to lock (the entities and the targets of their {@code CascadeType.REFRESH} to-one
+ * associations) are sorted by table name and identifier and locked with one single-table
+ * {@code select id ... order by id for update} per table and chunk. The state is then reloaded without a lock by
+ * {@link BatchRefresh}.
+ * <p>
+ * The association targets are read from the persistence context before locking. If the reload finds an association
+ * pointing elsewhere, the new targets are locked afterwards, outside the global order; a concurrent change of the
+ * association itself is the one case where ordering cannot be guaranteed.
+ */
+public final class OrderedLockRefresh {
+
+    private static final Comparator<Object> IDENTIFIER_ORDER = OrderedLockRefresh::compareIdentifiers;
+
+    private OrderedLockRefresh() {
+    }
+
+    public static void refreshAll(final EntityManager em, final Collection<?> entities, final LockModeType lockMode) {
+        if (!RootLockRefresh.isPessimistic(lockMode)) {
+            BatchRefresh.refreshAll(em, entities, lockMode);
+            return;
+        }
+
+        final LockModeType rowLock = lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT ? LockModeType.PESSIMISTIC_WRITE : lockMode;
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        final Set<Object> locked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Set<Object> toLock = lockTargets(session, entities);
+        while (!toLock.isEmpty()) {
+            lockInOrder(session, toLock, rowLock);
+            locked.addAll(toLock);
+
+            BatchRefresh.refreshAll(em, entities, LockModeType.NONE);
+
+            toLock = lockTargets(session, entities);
+            toLock.removeAll(locked);
+        }
+
+        for (final Object entity : locked) {
+            session.getPersistenceContextInternal().getEntry(entity).setLockMode(LockMode.fromJpaLockMode(rowLock));
+        }
+        if (lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT) {
+            // rows are locked and fresh, so this only bumps the versions
+            for (final Object entity : entities) {
+                em.lock(entity, lockMode);
+            }
+        }
+    }
+
+    /**
+     * The entities and the initialized targets of their {@code CascadeType.REFRESH} to-one associations.
+     */
+    private static Set<Object> lockTargets(final SessionImplementor session, final Collection<?> entities) {
+        final Set<Object> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final Object entity : entities) {
+            if (!session.contains(entity)) {
+                throw new IllegalArgumentException("Entity not managed: " + entity);
+            }
+            targets.add(entity);
+
+            final EntityPersister persister = StateReload.persister(session, entity);
+            final Object[] state = persister.getValues(entity);
+            for (int i = 0; i < state.length; i++) {
+                if (state[i] != null
+                        && persister.getPropertyTypes()[i].isEntityType()
+                        && persister.getPropertyCascadeStyles()[i].doCascade(CascadingActions.REFRESH)
+                        && Hibernate.isInitialized(state[i])) {
+                    targets.add(Hibernate.unproxy(state[i]));
+                }
+            }
+        }
+        return targets;
+    }
+
+    private static void lockInOrder(final SessionImplementor session, final Set<Object> entities, final LockModeType rowLock) {
+        final Map<String, EntityPersister> persisters = new TreeMap<>();
+        final Map<String, Set<Object>> idsByTable = new TreeMap<>();
+        for (final Object entity : entities) {
+            final EntityPersister persister = StateReload.persister(session, entity);
+            final String table = persister.getIdentifierTableDetails().getTableName();
+            persisters.put(table, persister);
+            idsByTable.computeIfAbsent(table, t -> new TreeSet<>(IDENTIFIER_ORDER)).add(persister.getIdentifier(entity, session));
+        }
+
+        for (final Map.Entry<String, Set<Object>> table : idsByTable.entrySet()) {
+            final String entityName = persisters.get(table.getKey()).getEntityName();
+            for (final List<Object> chunk : StateReload.chunks(table.getValue(), StateReload.DEFAULT_CHUNK_SIZE)) {
+                final List<Object> found = session.createSelectionQuery("select id(e) from " + entityName + " e where id(e) in :ids order by id(e)", Object.class)
+                        .setParameter("ids", chunk)
+                        .setLockMode(rowLock)
+                        .setHibernateFlushMode(FlushMode.MANUAL)
+                        .getResultList();
+                if (found.size() != chunk.size()) {
+                    final List<Object> missing = new ArrayList<>(chunk);
+                    missing.removeAll(found);
+                    throw new EntityNotFoundException("No row with the given identifier exists: [" + entityName + "#" + missing.get(0) + "]");
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareIdentifiers(final Object left, final Object right) {
+        return ((Comparable) left).compareTo(right);
+    }
+}
@@ -0,0 +1,107 @@
+package org.hibernate.bugs.refresh;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.engine.spi.EffectiveEntityGraph;
+import org.hibernate.engine.spi.LoadQueryInfluencers;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.graph.spi.RootGraphImplementor;
+
+/**
+ * Entity graphs and fetch profiles used to shape refreshes, resolved once per session factory.
+ * <p>
+ * The graph of an entity type is built on first use and kept as an immutable copy, and whether a fetch profile exists
+ * is looked up once, so applying either is a few field writes on the session's {@link LoadQueryInfluencers}: no graph
+ * or map allocations and no {@code UnknownProfileException} thrown for a missing profile. Both are applied for the
+ * duration of a callback only, and the session's previous graph and profiles are restored afterwards, even if the
+ * callback throws.
+ */
+public final class RefreshPlans {
+
+    /**
+     * Profile declared by the entities that turns their eager {@code second} association into a separate select.
+     */
+    public static final String ON_REFRESH_PROFILE = "onRefresh";
+
+    private static final ConcurrentMap<SessionFactoryImplementor, RefreshPlans> PLANS = new ConcurrentHashMap<>();
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final ConcurrentMap<Class<?>, RootGraphImplementor<?>> graphs = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> profiles = new ConcurrentHashMap<>();
+
+    private RefreshPlans(final SessionFactoryImplementor sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * The plans of the session's factory, forgotten when the factory closes.
+     */
+    public static RefreshPlans of(final SessionImplementor session) {
+        return PLANS.computeIfAbsent(session.getFactory(), sessionFactory -> {
+            sessionFactory.addObserver(new SessionFactoryObserver() {
+                @Override
+                public void sessionFactoryClosed(final SessionFactory factory) {
+                    PLANS.remove(sessionFactory);
+                }
+            });
+            return new RefreshPlans(sessionFactory);
+        });
+    }
+
+    /**
+     * Runs the callback with the given profile enabled; without the profile, runs it unchanged.
+     */
+    public void withProfile(final SessionImplementor session, final String profile, final Runnable runnable) {
+        final LoadQueryInfluencers influencers = session.getLoadQueryInfluencers();
+        if (!hasProfile(profile) || influencers.isFetchProfileEnabled(profile)) {
+            runnable.run();
+            return;
+        }
+        influencers.enableFetchProfile(profile);
+        try {
+            runnable.run();
+        } finally {
+            influencers.disableFetchProfile(profile);
+        }
+    }
+
+    /**
+     * Runs the callback with the empty fetch graph of the entity type applied, so that no association is joined or
+     * fetched: each one is left an unfetched reference, whatever fetch type the mapping declares.
+     */
+    public void withGraph(final SessionImplementor session, final Class<?> entityClass, final Runnable runnable) {
+        final EffectiveEntityGraph effective = session.getLoadQueryInfluencers().getEffectiveEntityGraph();
+        final RootGraphImplementor<?> previousGraph = effective.getGraph();
+        final GraphSemantic previousSemantic = effective.getSemantic();
+        effective.applyGraph(graph(session, entityClass), GraphSemantic.FETCH);
+        try {
+            runnable.run();
+        } finally {
+            if (previousGraph == null) {
+                effective.clear();
+            } else {
+                effective.applyGraph(previousGraph, previousSemantic);
+            }
+        }
+    }
+
+    public boolean hasProfile(final String profile) {
+        return profiles.computeIfAbsent(profile, sessionFactory::containsFetchProfileDefinition);
+    }
+
+    /**
+     * The empty graph of the entity type: as a fetch graph, it leaves every association an unfetched reference.
+     */
+    public RootGraphImplementor<?> graph(final SessionImplementor session, final Class<?> entityClass) {
+        return graphs.computeIfAbsent(
+                entityClass,
+                type -> ((RootGraphImplementor<?>) session.createEntityGraph(type)).makeImmutableCopy(type.getSimpleName())
+        );
+    }
+}
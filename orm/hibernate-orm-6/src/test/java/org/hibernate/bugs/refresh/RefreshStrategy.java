@@ -0,0 +1,60 @@
+package org.hibernate.bugs.refresh;
+
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+
+/**
+ * The ways of refreshing an entity that {@code JPAUnitTestCase} compares, shared with the benchmarks.
+ */
+public enum RefreshStrategy {
+
+    REFRESH {
+        @Override
+        public void refresh(final EntityManager em, final Object entity) {
+            em.refresh(entity, LockModeType.PESSIMISTIC_WRITE);
+        }
+    },
+    REFRESH_NO_LOCK {
+        @Override
+        public void refresh(final EntityManager em, final Object entity) {
+            em.refresh(entity);
+        }
+    },
+    WITH_PROFILE {
+        @Override
+        public void refresh(final EntityManager em, final Object entity) {
+            final SessionImplementor session = em.unwrap(SessionImplementor.class);
+            RefreshPlans.of(session).withProfile(session, RefreshPlans.ON_REFRESH_PROFILE, () -> em.refresh(entity, LockModeType.PESSIMISTIC_WRITE));
+        }
+    },
+    WITH_GRAPH {
+        @Override
+        public void refresh(final EntityManager em, final Object entity) {
+            final SessionImplementor session = em.unwrap(SessionImplementor.class);
+            RefreshPlans.of(session).withGraph(session, Hibernate.getClass(entity), () -> em.refresh(entity, LockModeType.PESSIMISTIC_WRITE));
+        }
+    },
+    ROOT_ONLY_LOCK {
+        @Override
+        public void refresh(final EntityManager em, final Object entity) {
+            RootLockRefresh.refresh(em, entity, LockModeType.PESSIMISTIC_WRITE);
+        }
+    },
+    OPTIMISTIC {
+        @Override
+        public void refresh(final EntityManager em, final Object entity) {
+            OptimisticRefresh.refresh(em, entity, LockModeType.OPTIMISTIC);
+        }
+    },
+    OPTIMISTIC_FORCE_INCREMENT {
+        @Override
+        public void refresh(final EntityManager em, final Object entity) {
+            OptimisticRefresh.refresh(em, entity, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        }
+    };
+
+    public abstract void refresh(EntityManager em, Object entity);
+}
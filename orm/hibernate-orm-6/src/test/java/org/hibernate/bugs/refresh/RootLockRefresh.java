@@ -0,0 +1,63 @@
+package org.hibernate.bugs.refresh;
+
+import org.hibernate.FlushMode;
+import org.hibernate.LockMode;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.NoResultException;
+
+/**
+ * Refresh that takes a pessimistic lock on the root row only.
+ * <p>
+ * {@code em.refresh(entity, PESSIMISTIC_WRITE)} appends {@code for update} to a statement that joins the eager
+ * {@code second} association, so the {@code NestedEntity} row gets locked too. Here the lock is taken by a
+ * single-table {@code select id ... for update} that cannot reach any joined row on any dialect, then the entity
+ * (and its cascaded associations) is reloaded with a plain, non-locking refresh.
+ */
+public final class RootLockRefresh {
+
+    private RootLockRefresh() {
+    }
+
+    public static void refresh(final EntityManager em, final Object entity, final LockModeType lockMode) {
+        if (!isPessimistic(lockMode)) {
+            em.refresh(entity, lockMode);
+            return;
+        }
+
+        final LockModeType rowLock = lockMode == LockModeType.PESSIMISTIC_READ ? LockModeType.PESSIMISTIC_READ : LockModeType.PESSIMISTIC_WRITE;
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        lockRoot(session, entity, rowLock);
+
+        em.refresh(entity);
+        session.getPersistenceContextInternal().getEntry(entity).setLockMode(LockMode.fromJpaLockMode(rowLock));
+
+        if (lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT) {
+            // the row is already locked and the state is fresh, so this only bumps the version
+            em.lock(entity, lockMode);
+        }
+    }
+
+    static void lockRoot(final SessionImplementor session, final Object entity, final LockModeType lockMode) {
+        final String entityName = session.getEntityName(entity);
+        final Object id = session.getIdentifier(entity);
+        try {
+            session.createSelectionQuery("select id(e) from " + entityName + " e where id(e) = :id", Object.class)
+                    .setParameter("id", id)
+                    .setLockMode(lockMode)
+                    .setHibernateFlushMode(FlushMode.MANUAL)
+                    .getSingleResult();
+        } catch (final NoResultException e) {
+            throw new EntityNotFoundException("No row with the given identifier exists: [" + entityName + "#" + id + "]");
+        }
+    }
+
+    static boolean isPessimistic(final LockModeType lockMode) {
+        return lockMode == LockModeType.PESSIMISTIC_READ
+                || lockMode == LockModeType.PESSIMISTIC_WRITE
+                || lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT;
+    }
+}
@@ -0,0 +1,103 @@
+package org.hibernate.bugs.refresh;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.LockMode;
+import org.hibernate.Session;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Work-queue style locking by {@code name}: rows locked by another transaction are skipped with
+ * {@code for update skip locked} instead of failing the whole lookup, so many workers can claim rows in parallel.
+ * <p>
+ * Only the root rows are locked: the queries select the entity without fetch joins, so the eager {@code second}
+ * association is loaded by a separate, non-locking select.
+ */
+public final class SkipLockedClaim {
+
+    private SkipLockedClaim() {
+    }
+
+    /**
+     * Locks the rows with the given names that no other transaction holds.
+     */
+    public static <T> Claim<T> claim(final EntityManager em, final Class<T> entityClass, final Collection<String> names) {
+        final Session session = em.unwrap(Session.class);
+        final String entityName = em.getMetamodel().entity(entityClass).getName();
+
+        final Map<String, T> claimed = new LinkedHashMap<>();
+        if (!names.isEmpty()) {
+            final List<Object[]> rows = session.createSelectionQuery("select e.name, e from " + entityName + " e where e.name in :names", Object[].class)
+                    .setParameter("names", names)
+                    .setHibernateLockMode(LockMode.UPGRADE_SKIPLOCKED)
+                    .getResultList();
+            for (final Object[] row : rows) {
+                claimed.put((String) row[0], entityClass.cast(row[1]));
+            }
+        }
+
+        final Set<String> skipped = new LinkedHashSet<>(names);
+        skipped.removeAll(claimed.keySet());
+        final Set<String> missing = new LinkedHashSet<>();
+        if (!skipped.isEmpty()) {
+            // tell rows held by someone else apart from rows that do not exist
+            final List<String> existing = session.createSelectionQuery("select e.name from " + entityName + " e where e.name in :names", String.class)
+                    .setParameter("names", skipped)
+                    .getResultList();
+            missing.addAll(skipped);
+            missing.removeAll(existing);
+            skipped.retainAll(existing);
+        }
+        return new Claim<>(claimed, skipped, missing);
+    }
+
+    /**
+     * Locks up to {@code limit} rows whose name starts with {@code namePrefix}, in identifier order, skipping the
+     * ones other transactions hold.
+     */
+    public static <T> List<T> claimNext(final EntityManager em, final Class<T> entityClass, final String namePrefix, final int limit) {
+        final String entityName = em.getMetamodel().entity(entityClass).getName();
+        return em.unwrap(Session.class)
+                .createSelectionQuery("select e from " + entityName + " e where e.name like :prefix order by id(e)", entityClass)
+                .setParameter("prefix", namePrefix + "%")
+                .setHibernateLockMode(LockMode.UPGRADE_SKIPLOCKED)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public static final class Claim<T> {
+
+        /**
+         * Locked rows, by name.
+         */
+        public final Map<String, T> claimed;
+
+        /**
+         * Names whose rows exist but are locked by another transaction.
+         */
+        public final Set<String> skipped;
+
+        /**
+         * Names without a row.
+         */
+        public final Set<String> missing;
+
+        Claim(final Map<String, T> claimed, final Set<String> skipped, final Set<String> missing) {
+            this.claimed = Collections.unmodifiableMap(claimed);
+            this.skipped = Collections.unmodifiableSet(skipped);
+            this.missing = Collections.unmodifiableSet(missing);
+        }
+
+        @Override
+        public String toString() {
+            return "Claim{" + "claimed=" + claimed.keySet() + ", skipped=" + skipped + ", missing=" + missing + '}';
+        }
+    }
+}
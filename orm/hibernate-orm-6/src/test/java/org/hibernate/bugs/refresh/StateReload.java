@@ -0,0 +1,227 @@
+package org.hibernate.bugs.refresh;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Hibernate;
+import org.hibernate.LockMode;
+import org.hibernate.engine.spi.CascadingActions;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+import jakarta.persistence.LockModeType;
+
+/**
+ * Reloads selected attributes of managed entities with plain HQL and writes them back into the instances and their
+ * persistence context snapshots, so callers can refresh many rows per statement without replacing instances.
+ * <p>
+ * Only root table columns are selected (the foreign key for to-one associations), so a lock on the query never
+ * extends to an associated row. Like {@code refresh}, the queries never flush: pending changes are discarded, not
+ * written.
+ */
+final class StateReload {
+
+    static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private StateReload() {
+    }
+
+    static EntityPersister persister(final SessionImplementor session, final Object entity) {
+        return session.getFactory().getMappingMetamodel().getEntityDescriptor(session.getEntityName(entity));
+    }
+
+    /**
+     * Groups managed entities by persister, skipping the ones already in {@code visited}.
+     */
+    static Map<EntityPersister, List<Object>> groupByPersister(final SessionImplementor session, final Collection<?> entities, final Set<Object> visited) {
+        final Map<EntityPersister, List<Object>> byPersister = new LinkedHashMap<>();
+        for (final Object entity : entities) {
+            if (!session.contains(entity)) {
+                throw new IllegalArgumentException("Entity not managed: " + entity);
+            }
+            if (visited.add(entity)) {
+                byPersister.computeIfAbsent(persister(session, entity), persister -> new ArrayList<>()).add(entity);
+            }
+        }
+        return byPersister;
+    }
+
+    /**
+     * Indexes of every attribute that a refresh has to overwrite.
+     */
+    static int[] allProperties(final EntityPersister persister) {
+        final Type[] types = persister.getPropertyTypes();
+        final int[] properties = new int[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (types[i].isCollectionType()) {
+                throw new UnsupportedOperationException("Collection attribute '" + persister.getPropertyNames()[i] + "' of " + persister.getEntityName() + " cannot be reloaded");
+            }
+            properties[i] = i;
+        }
+        return properties;
+    }
+
+    /**
+     * Indexes of the named attributes, in the given order.
+     */
+    static int[] properties(final EntityPersister persister, final String... names) {
+        final List<String> propertyNames = List.of(persister.getPropertyNames());
+        final int[] properties = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            properties[i] = propertyNames.indexOf(names[i]);
+            if (properties[i] < 0) {
+                throw new IllegalArgumentException("Unknown attribute '" + names[i] + "' of " + persister.getEntityName());
+            }
+            if (persister.getPropertyTypes()[properties[i]].isCollectionType()) {
+                throw new UnsupportedOperationException("Collection attribute '" + names[i] + "' of " + persister.getEntityName() + " cannot be reloaded");
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Selects the given attributes for the given identifiers, one statement per chunk, and returns them by identifier.
+     * Associations are returned as references.
+     */
+    static Map<Object, Object[]> load(final SessionImplementor session, final EntityPersister persister, final int[] properties, final Collection<?> ids, final LockModeType lockMode, final int chunkSize) {
+        final String hql = selectById(persister, properties);
+        final Type[] types = persister.getPropertyTypes();
+        final Map<Object, Object[]> rows = new HashMap<>();
+        for (final List<?> chunk : chunks(ids, chunkSize)) {
+            final List<Object[]> result = session.createSelectionQuery(hql, Object[].class)
+                    .setParameter("ids", chunk)
+                    .setLockMode(lockMode)
+                    .setHibernateFlushMode(FlushMode.MANUAL)
+                    .getResultList();
+            for (final Object[] row : result) {
+                final Object[] values = new Object[properties.length];
+                for (int i = 0; i < properties.length; i++) {
+                    values[i] = resolve(session, types[properties[i]], row[i + 1]);
+                }
+                rows.put(row[0], values);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Selects the version of each of the given identifiers, one statement per chunk.
+     */
+    static Map<Object, Object> loadVersions(final SessionImplementor session, final EntityPersister persister, final Collection<?> ids, final LockModeType lockMode, final int chunkSize) {
+        final String hql = "select id(e), version(e) from " + persister.getEntityName() + " e where id(e) in :ids";
+        final Map<Object, Object> versions = new HashMap<>();
+        for (final List<?> chunk : chunks(ids, chunkSize)) {
+            final List<Object[]> result = session.createSelectionQuery(hql, Object[].class)
+                    .setParameter("ids", chunk)
+                    .setLockMode(lockMode)
+                    .setHibernateFlushMode(FlushMode.MANUAL)
+                    .getResultList();
+            for (final Object[] row : result) {
+                versions.put(row[0], row[1]);
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Overwrites the given attributes of a managed entity and its loaded state, so the next flush sees no change.
+     */
+    static void apply(final SessionImplementor session, final EntityPersister persister, final Object entity, final int[] properties, final Object[] values) {
+        final EntityEntry entry = session.getPersistenceContextInternal().getEntry(entity);
+        final Type[] types = persister.getPropertyTypes();
+        // with bytecode dirty tracking, postUpdate forgets every tracked change, not only those of the reloaded attributes
+        final Set<String> pending = new HashSet<>();
+        if (entity instanceof SelfDirtinessTracker) {
+            pending.addAll(List.of(((SelfDirtinessTracker) entity).$$_hibernate_getDirtyAttributes()));
+            for (final int property : properties) {
+                pending.remove(persister.getPropertyNames()[property]);
+            }
+        }
+
+        final Object[] state = persister.getValues(entity);
+        for (int i = 0; i < properties.length; i++) {
+            state[properties[i]] = values[i];
+        }
+        persister.setValues(entity, state);
+
+        if (entry.getLoadedState() == null) {
+            // read-only entities keep no snapshot
+            return;
+        }
+        final Object[] loadedState = entry.getLoadedState().clone();
+        for (int i = 0; i < properties.length; i++) {
+            loadedState[properties[i]] = types[properties[i]].deepCopy(values[i], session.getFactory());
+        }
+        final LockMode lockMode = entry.getLockMode();
+        entry.postUpdate(entity, loadedState, persister.isVersioned() ? loadedState[persister.getVersionProperty()] : null);
+        entry.setLockMode(lockMode);
+        for (final String attribute : pending) {
+            ((SelfDirtinessTracker) entity).$$_hibernate_trackChange(attribute);
+        }
+    }
+
+    /**
+     * Adds the initialized targets of the {@code CascadeType.REFRESH} associations found in a full entity state.
+     */
+    static void collectCascaded(final EntityPersister persister, final Object[] state, final List<Object> cascaded) {
+        for (int i = 0; i < state.length; i++) {
+            // uninitialized proxies will read fresh state when first touched
+            if (state[i] != null
+                    && persister.getPropertyTypes()[i].isEntityType()
+                    && persister.getPropertyCascadeStyles()[i].doCascade(CascadingActions.REFRESH)
+                    && Hibernate.isInitialized(state[i])) {
+                cascaded.add(Hibernate.unproxy(state[i]));
+            }
+        }
+    }
+
+    static <T> List<List<T>> chunks(final Collection<T> values, final int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        final List<List<T>> chunks = new ArrayList<>();
+        List<T> chunk = new ArrayList<>(Math.min(chunkSize, values.size()));
+        for (final T value : values) {
+            if (chunk.size() == chunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+            chunk.add(value);
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static String selectById(final EntityPersister persister, final int[] properties) {
+        final StringBuilder hql = new StringBuilder("select id(e)");
+        for (final int property : properties) {
+            final Type type = persister.getPropertyTypes()[property];
+            hql.append(", e.").append(persister.getPropertyNames()[property]);
+            if (type.isEntityType()) {
+                // the target identifier is read from the foreign key column, without a join
+                hql.append('.').append(((EntityType) type).getIdentifierOrUniqueKeyPropertyName(persister.getFactory()));
+            }
+        }
+        return hql.append(" from ").append(persister.getEntityName()).append(" e where id(e) in :ids").toString();
+    }
+
+    private static Object resolve(final SessionImplementor session, final Type type, final Object value) {
+        if (value != null && type.isEntityType()) {
+            return session.getReference(((EntityType) type).getAssociatedEntityName(), value);
+        }
+        return value;
+    }
+}
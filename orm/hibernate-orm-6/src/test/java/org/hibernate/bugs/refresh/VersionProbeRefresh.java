@@ -0,0 +1,122 @@
+package org.hibernate.bugs.refresh;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.hibernate.LockMode;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Refresh that first reads only {@code id, version} and re-hydrates just the rows whose {@code @Version} moved.
+ * <p>
+ * The probe of the given entities carries the requested lock, so it also acts as the root-only lock statement of
+ * {@link RootLockRefresh}; associations mapped with {@code CascadeType.REFRESH} are probed the same way, without a
+ * lock. Entities with unflushed changes, and entities without a version, are always reloaded. Optimistic modes are
+ * applied to the given entities with {@code em.lock} after the probe, so {@code OPTIMISTIC} checks their versions at
+ * commit and {@code OPTIMISTIC_FORCE_INCREMENT} increments them.
+ */
+public final class VersionProbeRefresh {
+
+    private VersionProbeRefresh() {
+    }
+
+    /**
+     * @return the number of rows that were re-hydrated, cascaded ones included
+     */
+    public static int refresh(final EntityManager em, final Object entity, final LockModeType lockMode) {
+        return refreshAll(em, List.of(entity), lockMode);
+    }
+
+    /**
+     * @return the number of rows that were re-hydrated, cascaded ones included
+     */
+    public static int refreshAll(final EntityManager em, final Collection<?> entities, final LockModeType lockMode) {
+        final SessionImplementor session = em.unwrap(SessionImplementor.class);
+        final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        // optimistic modes are left to em.lock below, the probe only takes row locks
+        final LockModeType rowLock = !RootLockRefresh.isPessimistic(lockMode) ? LockModeType.NONE
+                : lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT ? LockModeType.PESSIMISTIC_WRITE : lockMode;
+        final int reloaded = refreshAll(session, entities, rowLock, visited);
+
+        if (lockMode != rowLock) {
+            // the rows are fresh, and locked if need be, so this only registers the version check or bumps the version
+            for (final Object entity : entities) {
+                em.lock(entity, lockMode);
+            }
+        }
+        return reloaded;
+    }
+
+    private static int refreshAll(final SessionImplementor session, final Collection<?> entities, final LockModeType rowLock, final Set<Object> visited) {
+        int reloaded = 0;
+        for (final Map.Entry<EntityPersister, List<Object>> group : StateReload.groupByPersister(session, entities, visited).entrySet()) {
+            final EntityPersister persister = group.getKey();
+
+            final Map<Object, Object> byId = new LinkedHashMap<>();
+            for (final Object entity : group.getValue()) {
+                byId.put(persister.getIdentifier(entity, session), entity);
+            }
+
+            final Map<Object, Object> stale = new LinkedHashMap<>(byId);
+            if (persister.isVersioned()) {
+                final Map<Object, Object> versions = StateReload.loadVersions(session, persister, byId.keySet(), rowLock, StateReload.DEFAULT_CHUNK_SIZE);
+                for (final Map.Entry<Object, Object> entry : byId.entrySet()) {
+                    if (!versions.containsKey(entry.getKey())) {
+                        throw new EntityNotFoundException("No row with the given identifier exists: [" + persister.getEntityName() + "#" + entry.getKey() + "]");
+                    }
+                    if (isCurrent(session, persister, entry.getValue(), versions.get(entry.getKey()))) {
+                        stale.remove(entry.getKey());
+                    }
+                }
+            }
+
+            if (!stale.isEmpty()) {
+                final int[] properties = StateReload.allProperties(persister);
+                // a versioned probe already holds the lock
+                final Map<Object, Object[]> rows = StateReload.load(session, persister, properties, stale.keySet(), persister.isVersioned() ? LockModeType.NONE : rowLock, StateReload.DEFAULT_CHUNK_SIZE);
+                for (final Map.Entry<Object, Object> entry : stale.entrySet()) {
+                    final Object[] values = rows.get(entry.getKey());
+                    if (values == null) {
+                        throw new EntityNotFoundException("No row with the given identifier exists: [" + persister.getEntityName() + "#" + entry.getKey() + "]");
+                    }
+                    StateReload.apply(session, persister, entry.getValue(), properties, values);
+                }
+                reloaded += stale.size();
+            }
+
+            final List<Object> cascaded = new ArrayList<>();
+            for (final Object entity : group.getValue()) {
+                if (rowLock != LockModeType.NONE) {
+                    session.getPersistenceContextInternal().getEntry(entity).setLockMode(LockMode.fromJpaLockMode(rowLock));
+                }
+                StateReload.collectCascaded(persister, persister.getValues(entity), cascaded);
+            }
+            if (!cascaded.isEmpty()) {
+                reloaded += refreshAll(session, cascaded, LockModeType.NONE, visited);
+            }
+        }
+        return reloaded;
+    }
+
+    private static boolean isCurrent(final SessionImplementor session, final EntityPersister persister, final Object entity, final Object version) {
+        final EntityEntry entry = session.getPersistenceContextInternal().getEntry(entity);
+        if (!Objects.equals(entry.getVersion(), version) || entry.getLoadedState() == null) {
+            return false;
+        }
+        // a refresh also discards unflushed changes
+        return persister.findDirty(persister.getValues(entity), entry.getLoadedState(), entity, session) == null;
+    }
+}
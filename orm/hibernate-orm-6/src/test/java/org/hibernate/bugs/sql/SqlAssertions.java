@@ -0,0 +1,28 @@
+package org.hibernate.bugs.sql;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+
+/**
+ * Assertions on the statements recorded by {@link StatementCapture}.
+ */
+public final class SqlAssertions {
+
+    private SqlAssertions() {
+    }
+
+    /**
+     * Runs the action and checks the shapes of the statements it prepared, in order: same count, same joins and
+     * {@code for update} on the same statements.
+     */
+    public static void assertStatements(final List<SqlShape> expected, final Runnable runnable) {
+        final List<String> statements = StatementCapture.capture(runnable);
+        Assertions.assertEquals(
+                expected,
+                SqlShape.parse(statements),
+                () -> "unexpected SQL:\n" + statements.stream().map(sql -> "    " + sql).collect(Collectors.joining("\n"))
+        );
+    }
+}
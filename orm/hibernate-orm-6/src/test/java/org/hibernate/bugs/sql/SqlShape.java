@@ -0,0 +1,109 @@
+package org.hibernate.bugs.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * What a statement does, without its column list or parameters: its kind, the table it reads or writes, the tables
+ * it joins and whether it takes row locks with {@code for update}.
+ * <p>
+ * On InnoDB a {@code for update} locks every row the statement reads, so a locking shape with joins is a lock on the
+ * joined tables too. Comparing shapes instead of SQL text keeps expectations readable and independent of aliases and
+ * dialect spelling, while still catching an extra join, an extra statement or a lock that moved.
+ */
+public final class SqlShape {
+
+    private static final Pattern KIND = Pattern.compile("^\\s*(select|insert|update|delete)\\b");
+    private static final Pattern TABLE = Pattern.compile("\\b(?:from|into|update)\\s+(\\w+)");
+    private static final Pattern JOIN = Pattern.compile("\\bjoin\\s+(\\w+)");
+    private static final Pattern FOR_UPDATE = Pattern.compile("\\bfor\\s+(?:no\\s+key\\s+)?update\\b|\\bfor\\s+share\\b");
+
+    private final String kind;
+    private final String table;
+    private final List<String> joins;
+    private final boolean forUpdate;
+
+    private SqlShape(final String kind, final String table, final List<String> joins, final boolean forUpdate) {
+        this.kind = kind;
+        this.table = table;
+        this.joins = joins;
+        this.forUpdate = forUpdate;
+    }
+
+    public static SqlShape select(final String table) {
+        return new SqlShape("select", table.toLowerCase(Locale.ROOT), List.of(), false);
+    }
+
+    public static SqlShape update(final String table) {
+        return new SqlShape("update", table.toLowerCase(Locale.ROOT), List.of(), false);
+    }
+
+    public SqlShape join(final String joined) {
+        final List<String> joins = new ArrayList<>(this.joins);
+        joins.add(joined.toLowerCase(Locale.ROOT));
+        return new SqlShape(kind, table, Collections.unmodifiableList(joins), forUpdate);
+    }
+
+    public SqlShape forUpdate() {
+        return new SqlShape(kind, table, joins, true);
+    }
+
+    public static SqlShape parse(final String sql) {
+        final String normalized = sql.toLowerCase(Locale.ROOT);
+        final Matcher kind = KIND.matcher(normalized);
+        final Matcher table = TABLE.matcher(normalized);
+        final List<String> joins = new ArrayList<>();
+        final Matcher join = JOIN.matcher(normalized);
+        while (join.find()) {
+            joins.add(join.group(1));
+        }
+        return new SqlShape(
+                kind.find() ? kind.group(1) : "other",
+                table.find() ? table.group(1) : null,
+                Collections.unmodifiableList(joins),
+                FOR_UPDATE.matcher(normalized).find()
+        );
+    }
+
+    public static List<SqlShape> parse(final List<String> statements) {
+        return statements.stream().map(SqlShape::parse).collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SqlShape)) {
+            return false;
+        }
+        final SqlShape that = (SqlShape) o;
+        return forUpdate == that.forUpdate
+                && kind.equals(that.kind)
+                && Objects.equals(table, that.table)
+                && joins.equals(that.joins);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, table, joins, forUpdate);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(kind).append(' ').append(table);
+        for (final String join : joins) {
+            sb.append(" join ").append(join);
+        }
+        if (forUpdate) {
+            sb.append(" for update");
+        }
+        return sb.toString();
+    }
+}
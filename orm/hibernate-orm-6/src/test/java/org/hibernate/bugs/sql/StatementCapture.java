@@ -0,0 +1,47 @@
+package org.hibernate.bugs.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Records the SQL that Hibernate prepares on the current thread while {@link #capture} runs.
+ * <p>
+ * Registered for the whole persistence unit through {@code hibernate.session_factory.statement_inspector}. Outside
+ * {@link #capture} it passes statements through untouched, and statements of other threads, such as the concurrent
+ * transactions of a lock test, are never recorded.
+ */
+public final class StatementCapture implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> STATEMENTS = new ThreadLocal<>();
+
+    @Override
+    public String inspect(final String sql) {
+        final List<String> statements = STATEMENTS.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Runs the given action and returns the statements it prepared, in order.
+     */
+    public static List<String> capture(final Runnable runnable) {
+        final List<String> previous = STATEMENTS.get();
+        final List<String> statements = new ArrayList<>();
+        STATEMENTS.set(statements);
+        try {
+            runnable.run();
+        } finally {
+            if (previous == null) {
+                STATEMENTS.remove();
+            } else {
+                previous.addAll(statements);
+                STATEMENTS.set(previous);
+            }
+        }
+        return statements;
+    }
+}